@@ -0,0 +1,95 @@
+package com.example.riley.inventoryapplication.Model;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the delta writer against a real database, which only runs on a device
+ */
+@RunWith(AndroidJUnit4.class)
+public class PricebookDeltaWriterTest {
+    private static final String SOURCE = "/pricebook.csv";
+
+    private SQLiteDatabase database;
+
+    @Before
+    public void createDatabase() {
+        // The tables are created in a database held in memory, never in the app's own
+        database = SQLiteDatabase.create(null);
+        SQLiteHelper.getInstance(InstrumentationRegistry.getTargetContext()).onCreate(database);
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    public void failedChunkIsNotCheckpointed() {
+        PricebookDeltaWriter writer = new PricebookDeltaWriter(database, new BarcodeMembership(), 10,
+                new ImportCheckpoint(SOURCE, 100, 1, 0, 0));
+        writer.apply(new ProductProfile(10, "Acme", "Oats"), 1);
+        writer.markApplied(10);
+        writer.apply(new ProductProfile(20, "Acme", "Bran"), 2);
+        writer.markApplied(20);
+        try {
+            // A product without a brand cannot be bound, which fails the chunk part way through
+            writer.apply(new ProductProfile(30, null, "Rice"), 3);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        } finally {
+            writer.close();
+        }
+        assertEquals(0, DatabaseUtils.queryNumEntries(database, SQLiteHelper.TABLE_NAME));
+        assertEquals(0, DatabaseUtils.queryNumEntries(database, SQLiteHelper.CHECKPOINT_TABLE_NAME));
+    }
+
+    @Test
+    public void resumeStartsAfterTheLastCommittedChunk() {
+        PricebookDeltaWriter writer = new PricebookDeltaWriter(database, new BarcodeMembership(), 1,
+                new ImportCheckpoint(SOURCE, 100, 1, 0, 0));
+        writer.apply(new ProductProfile(10, "Acme", "Oats"), 1);
+        writer.markApplied(10);
+        writer.flush();
+        writer.markApplied(20);
+        try {
+            writer.apply(new ProductProfile(30, null, "Rice"), 3);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        } finally {
+            writer.close();
+        }
+        assertEquals(1, DatabaseUtils.queryNumEntries(database, SQLiteHelper.TABLE_NAME));
+        assertEquals(10, DatabaseUtils.longForQuery(database, "SELECT " + SQLiteHelper.COLUMN_OFFSET + " FROM "
+                + SQLiteHelper.CHECKPOINT_TABLE_NAME + " WHERE " + SQLiteHelper.COLUMN_SOURCE + " = ?",
+                new String[]{SOURCE}));
+    }
+
+    @Test
+    public void lineForAProductEnteredByHandUpdatesIt() {
+        database.execSQL("INSERT INTO " + SQLiteHelper.TABLE_NAME + " VALUES (10, 'Shop', 'Oats')");
+        PricebookDeltaWriter writer = new PricebookDeltaWriter(database, new BarcodeMembership(), 10,
+                new ImportCheckpoint(SOURCE, 100, 1, 0, 0));
+        try {
+            writer.apply(new ProductProfile(10, "Acme", "Rolled Oats"), 1);
+        } finally {
+            writer.close();
+        }
+        assertEquals(0, writer.getInserted());
+        assertEquals(1, writer.getUpdated());
+        assertEquals("Rolled Oats", DatabaseUtils.stringForQuery(database, "SELECT " + SQLiteHelper.COLUMN_PRODUCT
+                + " FROM " + SQLiteHelper.TABLE_NAME + " WHERE " + SQLiteHelper.COLUMN_CODE + " = 10", null));
+        assertEquals(1, DatabaseUtils.queryNumEntries(database, SQLiteHelper.FINGERPRINT_TABLE_NAME));
+    }
+}
@@ -7,75 +7,177 @@ import android.os.Handler;
 import android.util.SparseArray;
 import android.view.Surface;
 
+import com.example.riley.inventoryapplication.Model.Gtin;
 import com.google.android.gms.vision.Frame;
 import com.google.android.gms.vision.barcode.Barcode;
 import com.google.android.gms.vision.barcode.BarcodeDetector;
 
-import java.nio.ByteBuffer;
 
+/**
+ * Reads barcodes from the images of the camera. The luminance of each image is copied into a
+ * buffer from a FrameBufferPool and the image closed straight away, so the camera can reuse
+ * it while the copy is being decoded. Decoding runs on the thread of a DetectionScheduler,
+ * which always takes the newest frame, so the camera thread only ever copies
+ *
+ * Only a region of each image is copied, and it is scaled down as far as a
+ * DownscaleController finds necessary to keep detection within its target time, so the
+ * detector reads far fewer pixels than the preview holds
+ */
 public class BarcodeReader {
     private static BarcodeReader reader;
     private Camera callback;
     private ImageReader imageReader;
     private BarcodeDetector barcodeDetector;
     private SparseArray<Barcode> currBarcode;
+    private final FrameBufferPool bufferPool;
+    private final DetectionScheduler scheduler;
+    private final ScanRegion region;
+    private final DownscaleController downscale = new DownscaleController(DownscaleController.DEFAULT_TARGET_NANOS);
 
     /**
-     * Constructor for a BarcodeReader
+     * Constructor for a BarcodeReader which searches the middle band of each image
      * @param reader The ImageReader that will feed the barcode reader images
      * @param handler The handler for this reader
      * @throws IllegalArgumentException
      *         callback == null || reader == null || handler == null
      */
     public BarcodeReader(Camera callback, ImageReader reader, Handler handler) {
-        if (reader == null || handler == null) {
+        this(callback, reader, handler, ScanRegion.MIDDLE_BAND);
+    }
+
+    /**
+     * Constructor for a BarcodeReader
+     * @param reader The ImageReader that will feed the barcode reader images
+     * @param handler The handler for this reader
+     * @param region The region of each image searched for barcodes
+     * @throws IllegalArgumentException
+     *         callback == null || reader == null || handler == null || region == null
+     */
+    public BarcodeReader(Camera callback, ImageReader reader, Handler handler, ScanRegion region) {
+        if (reader == null || handler == null || region == null) {
             throw new IllegalArgumentException();
         }
-        barcodeDetector = new BarcodeDetector.Builder(callback.getApplicationContext()).setBarcodeFormats(Barcode.UPC_A | Barcode.EAN_13).build();
+        this.region = region;
+        barcodeDetector = new BarcodeDetector.Builder(callback.getApplicationContext()).setBarcodeFormats(Barcode.UPC_A | Barcode.EAN_13 | Barcode.UPC_E).build();
         this.callback = callback;
         this.imageReader = reader;
+        this.bufferPool = new FrameBufferPool(region.width(reader.getWidth()), region.height(reader.getHeight()),
+                FrameBufferPool.DEFAULT_BUFFER_COUNT);
+        this.scheduler = new DetectionScheduler(bufferPool, new DetectionScheduler.FrameProcessor() {
+            @Override
+            public void process(FrameBuffer frame) {
+                long start = System.nanoTime();
+                checkDetect(convertToFrame(frame));
+                downscale.record(frame.getStep(), System.nanoTime() - start);
+            }
+        });
         reader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
             @Override
             public void onImageAvailable(ImageReader imageReader) {
                 Image currImage = imageReader.acquireLatestImage();
                 if (currImage != null) {
-                    Frame currFrame = convertImageToFrame(currImage);
-                    currImage.close();
-                    checkDetect(currFrame);
+                    FrameBuffer luminance;
+                    try {
+                        luminance = copyLuminance(currImage);
+                    } finally {
+                        currImage.close();
+                    }
+                    if (luminance != null) {
+                        scheduler.submit(luminance);
+                    } else {
+                        scheduler.recordDropped();
+                    }
                 }
             }
         }, handler);
     }
 
     /**
-     * Converts image into a usable frame which can be checked for a barcode
-     * @param image The image to be converted
-     * @return A Frame from the given image
+     * Copies the scan region of the luminance plane of a YUV_420_888 image into a buffer
+     * from the pool, scaled down by the current step
+     * @param image The image to be copied
+     * @return The buffer holding the copy, to be released to the pool once detection is done;
+     * null if every buffer is in use
      */
-    private Frame convertImageToFrame(Image image) {
-        ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+    private FrameBuffer copyLuminance(Image image) {
+        FrameBuffer buffer = bufferPool.acquire();
         if (buffer != null) {
-            Frame currFrame;
-            currFrame = new Frame.Builder().setImageData(buffer, imageReader.getWidth(), imageReader.getHeight(), ImageFormat.NV21).build();
-            return currFrame;
+            int width = region.width(image.getWidth());
+            int height = region.height(image.getHeight());
+            // A region smaller than the step could not be scaled down at all
+            int step = Math.min(downscale.getStep(), Math.min(width, height));
+            Image.Plane plane = image.getPlanes()[0];
+            Luminance.copy(plane.getBuffer(), plane.getRowStride(), plane.getPixelStride(),
+                    region.left(image.getWidth()), region.top(image.getHeight()), width, height, step, buffer);
         }
-        return null;
+        return buffer;
+    }
+
+    /**
+     * Wraps a buffer from the pool in a frame which can be checked for a barcode. The
+     * buffer is laid out as NV21 with grey chroma, which the detector accepts
+     * @param luminance The buffer holding the luminance of an image
+     * @return A Frame over the buffer
+     */
+    private Frame convertToFrame(FrameBuffer luminance) {
+        return new Frame.Builder().setImageData(luminance.getData(), luminance.getWidth(), luminance.getHeight(),
+                ImageFormat.NV21).build();
     }
 
     /**
      * Checks whether the given frame contains a barcode. On detect, notifies the current
-     * Camera activity
+     * Camera activity with the barcode normalized to a GTIN
      * @param frame The frame to be checked
      */
     private void checkDetect(Frame frame) {
         SparseArray<Barcode> code = barcodeDetector.detect(frame);
         if (code != null && code.size() > 0 && code != currBarcode) {
             currBarcode = code;
-            String stringCurrBarcode = currBarcode.valueAt(0).rawValue;
-            callback.onDetect(stringCurrBarcode);
+            long gtin = toGtin(currBarcode.valueAt(0));
+            if (gtin != Gtin.INVALID) {
+                callback.onDetect(gtin);
+            }
         }
     }
 
+    /**
+     * Normalizes a detected barcode to a GTIN, expanding UPC-E barcodes to the UPC-A they
+     * stand for
+     * @param barcode The detected barcode
+     * @return The GTIN of the barcode, Gtin.INVALID if its check digit is wrong
+     */
+    private static long toGtin(Barcode barcode) {
+        if (barcode.format == Barcode.UPC_E) {
+            return Gtin.parseUpcE(barcode.rawValue);
+        }
+        return Gtin.parse(barcode.rawValue);
+    }
+
+    /**
+     * Stops detection and releases the detector. Called once the camera thread has stopped,
+     * so no more frames can arrive
+     */
+    public void close() {
+        scheduler.stop();
+        barcodeDetector.release();
+    }
+
+    /**
+     * Return the scheduler running detection, for its frame counts
+     * @return The detection scheduler of this reader
+     */
+    public DetectionScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Return the controller choosing how far frames are scaled down, for its detection times
+     * @return The downscale controller of this reader
+     */
+    public DownscaleController getDownscale() {
+        return downscale;
+    }
+
     /**
      * Returns the surface of the image reader
      * @return Returns the surface of the image reader
@@ -16,15 +16,26 @@ import android.media.ImageReader;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Size;
+import android.view.HapticFeedbackConstants;
 import android.view.Surface;
 import android.view.TextureView;
-
+import android.view.View;
+import android.widget.Button;
+import android.widget.CompoundButton;
+import android.widget.Switch;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.example.riley.inventoryapplication.Model.Gtin;
 import com.example.riley.inventoryapplication.Model.ProductProfile;
-import com.example.riley.inventoryapplication.Model.SQLiteHelper;
+import com.example.riley.inventoryapplication.Model.ProductRepository;
+import com.example.riley.inventoryapplication.Model.ProductRequest;
+import com.example.riley.inventoryapplication.Model.ScanBatch;
 import com.example.riley.inventoryapplication.R;
 import com.example.riley.inventoryapplication.View.AddEntry;
 import com.example.riley.inventoryapplication.View.ProductEntry;
@@ -34,12 +45,19 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * This class sets up the camera for the barcode scanner to use
+ *
+ * By default the first barcode scanned opens the page to add or update its product. In batch
+ * mode the camera stays open instead, and each item scanned is counted into a ScanBatch,
+ * which is committed to the inventory counts in one transaction when saved or when the
+ * camera is left
  */
 public class Camera extends AppCompatActivity {
-    private SQLiteHelper sqLiteHelper;
+    private ProductRepository repository;
     private TextureView textureView;
     private CameraDevice camera;
     private CameraCaptureSession cameraSession;
@@ -48,13 +66,105 @@ public class Camera extends AppCompatActivity {
     private CaptureRequest.Builder captureRequestBuilder;
     private BarcodeReader barcodeReader;
     private ImageReader imgReader;
+    private TextView batchStatus;
+    private Button batchSave;
+    private ScanBatch batch;
+    private volatile boolean batchMode = false;
+    // Held by a commit from copying the counts to taking them out of the batch
+    private final Object batchCommitLock = new Object();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.camera_view);
         textureView = findViewById(R.id.textureView);
-        sqLiteHelper = new SQLiteHelper(getApplicationContext());
+        repository = ProductRepository.getInstance(this);
+        batch = new ScanBatch(getResources().getInteger(R.integer.repeat_scan_window_millis));
+        batchStatus = findViewById(R.id.batchStatus);
+        batchSave = findViewById(R.id.batchSave);
+        batchSave.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                commitBatch();
+            }
+        });
+        Switch batchSwitch = findViewById(R.id.batchSwitch);
+        batchSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton button, boolean checked) {
+                setBatchMode(checked);
+            }
+        });
+    }
+
+    /**
+     * Switches between batch scanning and opening a page for each barcode. Anything counted
+     * is committed when batch scanning is switched off
+     * @param batchMode True to count scans into the batch
+     */
+    private void setBatchMode(boolean batchMode) {
+        this.batchMode = batchMode;
+        int visibility = batchMode ? View.VISIBLE : View.GONE;
+        batchStatus.setVisibility(visibility);
+        batchSave.setVisibility(visibility);
+        if (batchMode) {
+            showBatch();
+        } else {
+            commitBatch();
+        }
+    }
+
+    /**
+     * Shows how much the batch holds
+     */
+    private void showBatch() {
+        batchStatus.setText(getString(R.string.batch_status, batch.getTotal(), batch.getProductCount()));
+    }
+
+    /**
+     * Commits the counts in the batch in one transaction, in the background. The counts are
+     * copied and taken out of the batch in the same background work, once committed, so
+     * items counted meanwhile stay in the batch and a failed commit can be saved again.
+     * Commits hold a lock of their own from copying to taking out, so a commit queued while
+     * another is running, as when the camera is left during a save, waits and then commits
+     * whatever the first left behind, and no count is committed twice
+     */
+    private void commitBatch() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        repository.run(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                synchronized (batchCommitLock) {
+                    Map<Long, Integer> counts = batch.getCounts();
+                    if (counts.isEmpty()) {
+                        return 0;
+                    }
+                    int total = 0;
+                    for (int count : counts.values()) {
+                        total += count;
+                    }
+                    repository.getStore().addCounts(counts);
+                    batch.remove(counts);
+                    return total;
+                }
+            }
+        }, new ProductRepository.ErrorCallback<Integer>() {
+            @Override
+            public void onResult(Integer total) {
+                showBatch();
+                if (total > 0) {
+                    Toast.makeText(getApplicationContext(), getString(R.string.batch_saved, total), Toast.LENGTH_SHORT).show();
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                // The counts are still in the batch, to be saved again
+                Toast.makeText(getApplicationContext(), R.string.save_failed, Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     private TextureView.SurfaceTextureListener surfaceTextureListener = new TextureView.SurfaceTextureListener() {
@@ -272,39 +382,75 @@ public class Camera extends AppCompatActivity {
             e.printStackTrace();
         }
         stopBackgroundThread();
+        barcodeReader.close();
+        // No more barcodes can arrive, so a lookup still running is for a screen being left
+        ProductRequest<ProductProfile> pendingLookup = lookup;
+        if (pendingLookup != null) {
+            pendingLookup.cancel();
+        }
+        // Leaving the camera ends the batch
+        commitBatch();
         closeCamera();
         imgReader.close();
         super.onPause();
     }
 
-    private boolean newActivity = false; // Avoid opening up multiple instances
+    private volatile boolean newActivity = false; // Avoid opening up multiple instances
+    private volatile ProductRequest<ProductProfile> lookup;
 
     /**
-     * Determines what to do after scanning the given barcode
-     * @param barcode The barcode whose entry will be added or updated
+     * Determines what to do after scanning the given barcode. Called on the detection thread.
+     * In batch mode the barcode is counted, unless it is a repeat read of the same item.
+     * Otherwise it is looked up in the background and the next page opened on the main
+     * thread once it is found
+     * @param barcode The GTIN whose entry will be added or updated
      */
-    public void onDetect(String barcode) {
-        ProductProfile prevEntry = sqLiteHelper.findByBarcode(barcode);
-        if (!newActivity) {
-            if (prevEntry != null) {
-                updateActivity(barcode, prevEntry);
-            } else {
-                addActivity(barcode);
+    public void onDetect(final long barcode) {
+        if (batchMode) {
+            if (batch.record(barcode, SystemClock.elapsedRealtime())) {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        showBatch();
+                        batchStatus.performHapticFeedback(HapticFeedbackConstants.VIRTUAL_KEY);
+                    }
+                });
             }
-            newActivity = true;
+            return;
         }
+        if (newActivity) {
+            return;
+        }
+        newActivity = true;
+        lookup = repository.findByBarcode(barcode, new ProductRepository.ErrorCallback<ProductProfile>() {
+            @Override
+            public void onResult(ProductProfile prevEntry) {
+                if (prevEntry != null) {
+                    updateActivity(barcode, prevEntry);
+                } else {
+                    addActivity(barcode);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                // Nothing was opened, so let the next scan try again
+                newActivity = false;
+            }
+        });
     }
 
     /**
      * Takes the user to the update entry page
-     * @param barcode The barcode of the product already in the database
+     * @param barcode The GTIN of the product already in the database
      * @param prevEntry The entry already contained in the database with
      *                  the same barcode
      */
-    private void updateActivity(String barcode, ProductProfile prevEntry) {
+    private void updateActivity(long barcode, ProductProfile prevEntry) {
         Intent intent = new Intent(getApplicationContext(), ProductEntry.class);
         intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
-        intent.putExtra("barcode", barcode);
+        intent.putExtra("barcode", Gtin.toString(barcode));
+        intent.putExtra("gtin", barcode);
         intent.putExtra("brand", prevEntry.getBrandName());
         intent.putExtra("product", prevEntry.getProductName());
         intent.putExtra("update", true);
@@ -313,12 +459,13 @@ public class Camera extends AppCompatActivity {
 
     /**
      * Takes the user to the add entry page
-     * @param barcode The barcode of the product to be added
+     * @param barcode The GTIN of the product to be added
      */
-    private void addActivity(String barcode) {
+    private void addActivity(long barcode) {
         Intent intent = new Intent(getApplicationContext(), AddEntry.class);
         intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
-        intent.putExtra("barcode", barcode);
+        intent.putExtra("barcode", Gtin.toString(barcode));
+        intent.putExtra("gtin", barcode);
         startActivity(intent);
     }
 
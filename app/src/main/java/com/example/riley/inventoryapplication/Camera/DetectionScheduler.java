@@ -0,0 +1,164 @@
+package com.example.riley.inventoryapplication.Camera;
+
+/**
+ * Runs barcode detection on a thread of its own, so the camera thread that copies frames is
+ * never held up by decoding. Frames are handed over through a single slot: a frame submitted
+ * while another is waiting replaces it, and the replaced frame is dropped and its buffer
+ * returned to the pool, so detection always works on the newest frame and never falls behind
+ */
+public class DetectionScheduler {
+
+    /**
+     * The detection run on each frame
+     */
+    public interface FrameProcessor {
+        /**
+         * Processes a frame on the detection thread. The buffer is returned to the pool
+         * afterwards, so it must not be kept
+         * @param frame The buffer holding the frame
+         */
+        void process(FrameBuffer frame);
+    }
+
+    // Representation invariant
+    //  latest == null || latest is a buffer of pool not yet processed
+    //  !running implies latest == null
+
+    private final FrameBufferPool pool;
+    private final FrameProcessor processor;
+    private final Thread thread;
+    private FrameBuffer latest;
+    private boolean running = true;
+    private long processed, dropped;
+
+    /**
+     * Constructor for a scheduler, which starts its detection thread
+     * @param pool The pool the submitted buffers belong to
+     * @param processor The detection to run on each frame
+     * @throws IllegalArgumentException pool == null || processor == null
+     */
+    public DetectionScheduler(FrameBufferPool pool, FrameProcessor processor) {
+        if (pool == null || processor == null) {
+            throw new IllegalArgumentException();
+        }
+        this.pool = pool;
+        this.processor = processor;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processFrames();
+            }
+        }, "BarcodeDetection");
+        thread.start();
+    }
+
+    /**
+     * Hands a frame to the detection thread without waiting for it, replacing any frame
+     * still waiting. Once stopped, the frame is dropped
+     * @param frame A buffer acquired from the pool, holding the frame
+     * @throws IllegalArgumentException frame == null
+     */
+    public void submit(FrameBuffer frame) {
+        if (frame == null) {
+            throw new IllegalArgumentException();
+        }
+        FrameBuffer replaced;
+        synchronized (this) {
+            if (!running) {
+                replaced = frame;
+            } else {
+                replaced = latest;
+                latest = frame;
+                notifyAll();
+            }
+            if (replaced != null) {
+                dropped++;
+            }
+        }
+        if (replaced != null) {
+            pool.release(replaced);
+        }
+    }
+
+    /**
+     * Records a frame dropped before it could be submitted, such as when no buffer was free
+     */
+    public synchronized void recordDropped() {
+        dropped++;
+    }
+
+    /**
+     * Stops the detection thread, waiting for any detection under way to finish. A frame
+     * still waiting is dropped
+     */
+    public void stop() {
+        FrameBuffer waiting;
+        synchronized (this) {
+            running = false;
+            waiting = latest;
+            latest = null;
+            if (waiting != null) {
+                dropped++;
+            }
+            notifyAll();
+        }
+        if (waiting != null) {
+            pool.release(waiting);
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Return the number of frames detection has run on
+     * @return The number of frames processed
+     */
+    public synchronized long getProcessedFrames() {
+        return processed;
+    }
+
+    /**
+     * Return the number of frames skipped because a newer one arrived first, or for want
+     * of a buffer
+     * @return The number of frames dropped
+     */
+    public synchronized long getDroppedFrames() {
+        return dropped;
+    }
+
+    /**
+     * Runs detection on each newest frame until stopped
+     */
+    private void processFrames() {
+        while (true) {
+            FrameBuffer frame;
+            synchronized (this) {
+                while (running && latest == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                frame = latest;
+                latest = null;
+            }
+            try {
+                processor.process(frame);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                pool.release(frame);
+            }
+            synchronized (this) {
+                processed++;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.riley.inventoryapplication.Camera;
+
+/**
+ * Chooses how far to scale frames down before detection, from how long detection has been
+ * taking. The time of each detection is folded into an exponentially weighted moving average;
+ * while the average is over the target the frames are scaled down a step further, and once
+ * the next step up is predicted to fit comfortably under the target they are scaled back up.
+ * Detection time grows with the number of pixels, the square of the step, which is what the
+ * prediction assumes
+ *
+ * The step is read on the camera thread and detection times recorded on the detection thread
+ *
+ * @specfield DEFAULT_TARGET_NANOS The detection time aimed for by default, about two preview frames
+ * @specfield MAX_STEP The furthest frames are ever scaled down
+ */
+public class DownscaleController {
+    public static final long DEFAULT_TARGET_NANOS = 66000000L;
+    public static final int MAX_STEP = 4;
+    // Weight of the newest detection time in the average
+    private static final double SMOOTHING = 0.2;
+    // Fraction of the target a step up must be predicted to stay under, so the step does not flap
+    private static final double HEADROOM = 0.7;
+
+    // Representation invariant
+    //  1 <= step <= MAX_STEP
+    //  averageNanos < 0 iff no detection has been recorded yet
+
+    private final long targetNanos;
+    private volatile int step = 1;
+    private double averageNanos = -1;
+
+    /**
+     * Constructor for a controller
+     * @param targetNanos The detection time to stay under, in nanoseconds
+     * @throws IllegalArgumentException targetNanos < 1
+     */
+    public DownscaleController(long targetNanos) {
+        if (targetNanos < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.targetNanos = targetNanos;
+    }
+
+    /**
+     * Return the step to scale the next frame down by
+     * @return Keep one pixel in this many across and down
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Records how long a detection took, changing the step if the average calls for it
+     * @param detectedStep The step of the frame detected
+     * @param nanos How long detection took, in nanoseconds
+     */
+    public synchronized void record(int detectedStep, long nanos) {
+        if (detectedStep != step) {
+            // Detected before the last change of step, so it says nothing of the current one
+            return;
+        }
+        averageNanos = averageNanos < 0 ? nanos : SMOOTHING * nanos + (1 - SMOOTHING) * averageNanos;
+        if (averageNanos > targetNanos && step < MAX_STEP) {
+            changeStep(step + 1);
+        } else if (step > 1) {
+            double ratio = (double) step / (step - 1);
+            if (averageNanos * ratio * ratio < targetNanos * HEADROOM) {
+                changeStep(step - 1);
+            }
+        }
+    }
+
+    /**
+     * Return the average detection time, as measured or predicted for the current step
+     * @return The average in nanoseconds, 0 if nothing has been detected yet
+     */
+    public synchronized long getAverageNanos() {
+        return averageNanos < 0 ? 0 : (long) averageNanos;
+    }
+
+    /**
+     * Moves to the given step, carrying the average over as predicted for the new step
+     * @param newStep The step to move to
+     */
+    private void changeStep(int newStep) {
+        double ratio = (double) step / newStep;
+        averageNanos = averageNanos * ratio * ratio;
+        step = newStep;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.riley.inventoryapplication.Camera;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A direct buffer holding one frame for the barcode detector, along with the size of the
+ * frame it currently holds. Frames may be cropped and scaled down, so the size changes from
+ * frame to frame up to the largest the buffer was made for
+ *
+ * The detector only accepts NV21 and similar formats, and only reads their luminance, so the
+ * buffer is laid out as NV21 with its chroma set to grey whenever the size changes
+ */
+public final class FrameBuffer {
+    // Chroma value of a pixel with no colour
+    private static final byte NEUTRAL_CHROMA = (byte) 0x80;
+
+    // Representation invariant
+    //  width * height <= maxPixels
+    //  data[width * height .. width * height * 3 / 2) holds NEUTRAL_CHROMA
+
+    private final ByteBuffer data;
+    private final int maxPixels;
+    private int width;
+    private int height;
+    private int step = 1;
+
+    /**
+     * Constructor for a buffer, sized for frames of the given number of pixels
+     * @param maxPixels The largest number of pixels of a frame
+     * @throws IllegalArgumentException maxPixels < 1
+     */
+    FrameBuffer(int maxPixels) {
+        if (maxPixels < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.maxPixels = maxPixels;
+        data = ByteBuffer.allocateDirect(maxPixels * 3 / 2);
+    }
+
+    /**
+     * Sets the size of the frame about to be copied in
+     * @param width The width in pixels of the frame
+     * @param height The height in pixels of the frame
+     * @param step How far the frame was scaled down, as one pixel kept in this many
+     * @throws IllegalArgumentException width < 1 || height < 1 || step < 1 || width * height > the pixels this buffer holds
+     */
+    void setSize(int width, int height, int step) {
+        if (width < 1 || height < 1 || step < 1 || (long) width * height > maxPixels) {
+            throw new IllegalArgumentException();
+        }
+        this.step = step;
+        if (width != this.width || height != this.height) {
+            int pixels = width * height;
+            for (int offset = pixels; offset < pixels * 3 / 2; offset++) {
+                data.put(offset, NEUTRAL_CHROMA);
+            }
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Return the buffer holding the frame
+     * @return The frame's bytes, luminance first
+     */
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    /**
+     * Return the width of the frame held
+     * @return The width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Return the height of the frame held
+     * @return The height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Return how far the frame held was scaled down
+     * @return One pixel was kept in this many, across and down
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Return the largest number of pixels of a frame this buffer holds
+     * @return The capacity in pixels
+     */
+    int getMaxPixels() {
+        return maxPixels;
+    }
+}
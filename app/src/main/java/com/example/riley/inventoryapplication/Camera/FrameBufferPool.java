@@ -0,0 +1,67 @@
+package com.example.riley.inventoryapplication.Camera;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A fixed set of frame buffers for the barcode detector, which are handed out and returned
+ * for every frame so that scanning allocates no frame data once it has started. When every
+ * buffer is in use the frame is simply dropped, since a newer one will arrive in a few
+ * milliseconds
+ *
+ * @specfield DEFAULT_BUFFER_COUNT The number of buffers in a pool by default
+ */
+public class FrameBufferPool {
+    public static final int DEFAULT_BUFFER_COUNT = 3;
+
+    // Representation invariant
+    //  every buffer in free holds maxPixels, and is either in free or handed out, never both
+
+    private final int maxPixels;
+    private final ArrayBlockingQueue<FrameBuffer> free;
+
+    /**
+     * Constructor for a pool of frame buffers
+     * @param maxWidth The largest width in pixels of a frame
+     * @param maxHeight The largest height in pixels of a frame
+     * @param count The number of buffers
+     * @throws IllegalArgumentException maxWidth < 1 || maxHeight < 1 || count < 1
+     */
+    public FrameBufferPool(int maxWidth, int maxHeight, int count) {
+        if (maxWidth < 1 || maxHeight < 1 || count < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.maxPixels = maxWidth * maxHeight;
+        free = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; i++) {
+            free.add(new FrameBuffer(maxPixels));
+        }
+    }
+
+    /**
+     * Takes a buffer out of the pool
+     * @return A buffer, null if every buffer is in use
+     */
+    public FrameBuffer acquire() {
+        return free.poll();
+    }
+
+    /**
+     * Returns a buffer to the pool, once the detector is done with it
+     * @param buffer A buffer acquired from this pool
+     * @throws IllegalArgumentException buffer == null || buffer is not the size of this pool's buffers
+     */
+    public void release(FrameBuffer buffer) {
+        if (buffer == null || buffer.getMaxPixels() != maxPixels) {
+            throw new IllegalArgumentException();
+        }
+        free.offer(buffer);
+    }
+
+    /**
+     * Return the number of buffers not in use
+     * @return The number of buffers available to acquire
+     */
+    public int available() {
+        return free.size();
+    }
+}
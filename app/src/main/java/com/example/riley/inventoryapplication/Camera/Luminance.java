@@ -0,0 +1,63 @@
+package com.example.riley.inventoryapplication.Camera;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Copies a region of the luminance plane of a camera image into a tightly packed frame
+ * buffer, optionally scaled down. Camera images may pad each row beyond its width, and may
+ * space pixels apart, so a plane is copied row by row following its strides rather than as
+ * one block
+ *
+ * Scaling down keeps every step-th pixel of every step-th row. Barcode bars are many pixels
+ * wide at preview resolutions, so sampling keeps them readable while the detector reads a
+ * step squared times fewer pixels
+ */
+final class Luminance {
+
+    private Luminance() {
+    }
+
+    /**
+     * Copies a region of a plane into the given buffer, one byte per kept pixel with no
+     * padding, and sets the buffer's size to that of the copy
+     * @requires source holds the region at the given strides, and destination holds at least
+     * (width / step) * (height / step) pixels
+     * @param source The plane to copy; its position and limit are changed
+     * @param rowStride The distance in bytes between the starts of two rows
+     * @param pixelStride The distance in bytes between two pixels of a row
+     * @param left The first column of the region
+     * @param top The first row of the region
+     * @param width The width in pixels of the region
+     * @param height The height in pixels of the region
+     * @param step Keep one pixel in this many across and down, 1 to copy every pixel
+     * @param destination The buffer to copy into; its data is left positioned at its start
+     * @throws IllegalArgumentException pixelStride < 1 || step < 1 || width < step || height < step
+     */
+    static void copy(ByteBuffer source, int rowStride, int pixelStride, int left, int top, int width, int height,
+                     int step, FrameBuffer destination) {
+        if (pixelStride < 1 || step < 1 || width < step || height < step) {
+            throw new IllegalArgumentException();
+        }
+        int scaledWidth = width / step;
+        int scaledHeight = height / step;
+        destination.setSize(scaledWidth, scaledHeight, step);
+        ByteBuffer data = destination.getData();
+        data.clear();
+        for (int row = 0; row < scaledHeight; row++) {
+            int rowStart = (top + row * step) * rowStride + left * pixelStride;
+            if (pixelStride == 1 && step == 1) {
+                // The last row may end at the last pixel rather than a full stride later
+                source.limit(source.capacity());
+                source.position(rowStart);
+                source.limit(rowStart + width);
+                data.put(source);
+            } else {
+                int pixelStep = pixelStride * step;
+                for (int column = 0; column < scaledWidth; column++) {
+                    data.put(source.get(rowStart + column * pixelStep));
+                }
+            }
+        }
+        data.rewind();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.riley.inventoryapplication.Camera;
+
+/**
+ * The part of each camera frame searched for barcodes, as fractions of the frame's width and
+ * height so that it holds for any frame size. Searching a band across the middle of the
+ * frame rather than the whole frame cuts the pixels the detector reads, while a barcode held
+ * up to the camera still crosses it
+ *
+ * @specfield MIDDLE_BAND The full width of the frame, across the middle half of its height
+ * @specfield FULL_FRAME The whole frame
+ */
+public final class ScanRegion {
+    public static final ScanRegion MIDDLE_BAND = new ScanRegion(0f, 0.25f, 1f, 0.75f);
+    public static final ScanRegion FULL_FRAME = new ScanRegion(0f, 0f, 1f, 1f);
+
+    // Representation invariant
+    //  0 <= left < right <= 1 && 0 <= top < bottom <= 1
+
+    private final float left;
+    private final float top;
+    private final float right;
+    private final float bottom;
+
+    /**
+     * Constructor for a region
+     * @param left The left edge, as a fraction of the frame width
+     * @param top The top edge, as a fraction of the frame height
+     * @param right The right edge, as a fraction of the frame width
+     * @param bottom The bottom edge, as a fraction of the frame height
+     * @throws IllegalArgumentException the edges are outside the frame or out of order
+     */
+    public ScanRegion(float left, float top, float right, float bottom) {
+        if (!(0 <= left && left < right && right <= 1 && 0 <= top && top < bottom && bottom <= 1)) {
+            throw new IllegalArgumentException();
+        }
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    /**
+     * Return the first column of the region in a frame of the given width
+     * @param frameWidth The width in pixels of the frame
+     * @return The left edge in pixels
+     */
+    public int left(int frameWidth) {
+        return (int) (left * frameWidth);
+    }
+
+    /**
+     * Return the first row of the region in a frame of the given height
+     * @param frameHeight The height in pixels of the frame
+     * @return The top edge in pixels
+     */
+    public int top(int frameHeight) {
+        return (int) (top * frameHeight);
+    }
+
+    /**
+     * Return the width of the region in a frame of the given width
+     * @param frameWidth The width in pixels of the frame
+     * @return The width in pixels, at least one
+     */
+    public int width(int frameWidth) {
+        return Math.max(1, (int) (right * frameWidth) - left(frameWidth));
+    }
+
+    /**
+     * Return the height of the region in a frame of the given height
+     * @param frameHeight The height in pixels of the frame
+     * @return The height in pixels, at least one
+     */
+    public int height(int frameHeight) {
+        return Math.max(1, (int) (bottom * frameHeight) - top(frameHeight));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.riley.inventoryapplication.Import;
+
+/**
+ * The header names of the columns holding the brand, barcode and product name in a
+ * delimited pricebook export. Names are matched ignoring case and surrounding whitespace
+ *
+ * @specfield DEFAULT The column names used by the distributor's own pricebook
+ */
+public class ColumnMapping {
+    public static final ColumnMapping DEFAULT = new ColumnMapping("Brand", "Item#", "Description");
+
+    private final String brandColumn, barcodeColumn, productColumn;
+
+    /**
+     * Constructor for a column mapping
+     * @param brandColumn The name of the column holding the brand
+     * @param barcodeColumn The name of the column holding the barcode
+     * @param productColumn The name of the column holding the product name
+     * @throws IllegalArgumentException brandColumn == null || barcodeColumn == null
+     *         || productColumn == null
+     */
+    public ColumnMapping(String brandColumn, String barcodeColumn, String productColumn) {
+        if (brandColumn == null || barcodeColumn == null || productColumn == null) {
+            throw new IllegalArgumentException();
+        }
+        this.brandColumn = brandColumn.trim();
+        this.barcodeColumn = barcodeColumn.trim();
+        this.productColumn = productColumn.trim();
+    }
+
+    /**
+     * Return the name of the column holding the brand
+     * @return The brand column name
+     */
+    public String getBrandColumn() {
+        return brandColumn;
+    }
+
+    /**
+     * Return the name of the column holding the barcode
+     * @return The barcode column name
+     */
+    public String getBarcodeColumn() {
+        return barcodeColumn;
+    }
+
+    /**
+     * Return the name of the column holding the product name
+     * @return The product column name
+     */
+    public String getProductColumn() {
+        return productColumn;
+    }
+
+    /**
+     * Finds the position of the given column in a header
+     * @param header The fields of the header line
+     * @param name The name of the column
+     * @return The index of the column in the header, -1 if it is missing
+     */
+    static int indexOf(String[] header, String name) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.riley.inventoryapplication.Import;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A pricebook exported as comma or tab separated values, with a header line naming the
+ * columns. The header is resolved against a column mapping once, before the import starts,
+ * so every parse worker knows where the brand, barcode and product name are
+ */
+public class DelimitedFormat implements PricebookFormat {
+
+    // Representation invariant
+    //  brandColumn, barcodeColumn and productColumn are distinct and >= 0
+
+    private final char delimiter;
+    private final int brandColumn, barcodeColumn, productColumn;
+
+    /**
+     * Constructor for a delimited format
+     * @param delimiter The character separating fields
+     * @param brandColumn The index of the brand column
+     * @param barcodeColumn The index of the barcode column
+     * @param productColumn The index of the product name column
+     */
+    private DelimitedFormat(char delimiter, int brandColumn, int barcodeColumn, int productColumn) {
+        this.delimiter = delimiter;
+        this.brandColumn = brandColumn;
+        this.barcodeColumn = barcodeColumn;
+        this.productColumn = productColumn;
+    }
+
+    /**
+     * Creates the format described by the given header line
+     * @param delimiter The character separating fields
+     * @param header The first line of the pricebook, naming its columns
+     * @param mapping The names of the columns to import
+     * @return The format of the pricebook
+     * @throws IOException If a mapped column is missing from the header
+     * @throws IllegalArgumentException header == null || mapping == null
+     */
+    public static DelimitedFormat fromHeader(char delimiter, String header, ColumnMapping mapping)
+            throws IOException {
+        if (header == null || mapping == null) {
+            throw new IllegalArgumentException();
+        }
+        List<String> fields = DelimitedLineParser.split(header.toCharArray(), 0, header.length(), delimiter);
+        String[] names = fields.toArray(new String[fields.size()]);
+        int brand = ColumnMapping.indexOf(names, mapping.getBrandColumn());
+        int barcode = ColumnMapping.indexOf(names, mapping.getBarcodeColumn());
+        int product = ColumnMapping.indexOf(names, mapping.getProductColumn());
+        if (brand < 0 || barcode < 0 || product < 0 || brand == barcode || brand == product || barcode == product) {
+            throw new IOException("Pricebook header does not contain the columns " + mapping.getBrandColumn()
+                    + ", " + mapping.getBarcodeColumn() + " and " + mapping.getProductColumn());
+        }
+        return new DelimitedFormat(delimiter, brand, barcode, product);
+    }
+
+    @Override
+    public PricebookLineParser newLineParser() {
+        return new DelimitedLineParser(delimiter, brandColumn, barcodeColumn, productColumn);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.riley.inventoryapplication.Import;
+
+import com.example.riley.inventoryapplication.Model.Gtin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser for lines of comma or tab separated values. Fields may be quoted with double
+ * quotes, in which case the delimiter may appear inside them and a doubled quote stands for
+ * a single one. A quoted field cannot span lines, since the import cuts the pricebook at
+ * line ends. Every column other than the brand, barcode and product name is kept as a
+ * trailing column, so a change to any of them is seen as a change to the product
+ */
+class DelimitedLineParser implements PricebookLineParser {
+    private static final int MAX_BARCODE_DIGITS = 18;
+
+    private final char delimiter;
+    private final int brandColumn, barcodeColumn, productColumn, columnCount;
+    private final StringBuilder builder = new StringBuilder();
+
+    /**
+     * Constructor for a delimited line parser
+     * @param delimiter The character separating fields
+     * @param brandColumn The index of the brand column
+     * @param barcodeColumn The index of the barcode column
+     * @param productColumn The index of the product name column
+     */
+    DelimitedLineParser(char delimiter, int brandColumn, int barcodeColumn, int productColumn) {
+        this.delimiter = delimiter;
+        this.brandColumn = brandColumn;
+        this.barcodeColumn = barcodeColumn;
+        this.productColumn = productColumn;
+        this.columnCount = Math.max(brandColumn, Math.max(barcodeColumn, productColumn)) + 1;
+    }
+
+    @Override
+    public boolean parseLine(char[] chars, int offset, int length, PricebookRecord record) {
+        List<String> fields = split(chars, offset, length, delimiter);
+        if (fields.size() < columnCount) {
+            return false;
+        }
+        long barcode = parseBarcode(fields.get(barcodeColumn));
+        String brand = fields.get(brandColumn);
+        String product = fields.get(productColumn);
+        if (barcode == Gtin.INVALID || product.isEmpty()) {
+            return false;
+        }
+        builder.setLength(0);
+        for (int i = 0; i < fields.size(); i++) {
+            if (i != brandColumn && i != barcodeColumn && i != productColumn) {
+                if (builder.length() > 0) {
+                    builder.append(' ');
+                }
+                builder.append(fields.get(i));
+            }
+        }
+        record.set(brand, barcode, product, builder.toString());
+        return true;
+    }
+
+    /**
+     * Splits a line into its fields, removing quotes and surrounding whitespace
+     * @param chars The characters containing the line
+     * @param offset The index of the first character of the line
+     * @param length The number of characters in the line
+     * @param delimiter The character separating fields
+     * @return The fields of the line, in order
+     */
+    static List<String> split(char[] chars, int offset, int length, char delimiter) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int end = offset + length;
+        int i = offset;
+        while (true) {
+            field.setLength(0);
+            while (i < end && chars[i] != delimiter && Character.isWhitespace(chars[i])) {
+                i++;
+            }
+            if (i < end && chars[i] == '"') {
+                i++;
+                while (i < end) {
+                    if (chars[i] == '"') {
+                        if (i + 1 < end && chars[i + 1] == '"') {
+                            field.append('"');
+                            i += 2;
+                        } else {
+                            i++;
+                            break;
+                        }
+                    } else {
+                        field.append(chars[i++]);
+                    }
+                }
+                // Anything between the closing quote and the delimiter is dropped
+                while (i < end && chars[i] != delimiter) {
+                    i++;
+                }
+                fields.add(field.toString());
+            } else {
+                while (i < end && chars[i] != delimiter) {
+                    field.append(chars[i++]);
+                }
+                fields.add(field.toString().trim());
+            }
+            if (i >= end) {
+                return fields;
+            }
+            // Step over the delimiter
+            i++;
+        }
+    }
+
+    /**
+     * Reads a barcode made up only of digits, normalizing it the same way as the text
+     * pricebook
+     * @param field The barcode field
+     * @return The GTIN of the barcode, Gtin.INVALID if the field is not a barcode
+     */
+    private static long parseBarcode(String field) {
+        if (field.isEmpty() || field.length() > MAX_BARCODE_DIGITS) {
+            return Gtin.INVALID;
+        }
+        long barcode = 0;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c < '0' || c > '9') {
+                return Gtin.INVALID;
+            }
+            barcode = barcode * 10 + (c - '0');
+        }
+        return Gtin.fromPricebook(barcode, field.length());
+    }
+}
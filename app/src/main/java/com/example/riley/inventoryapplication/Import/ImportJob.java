@@ -0,0 +1,206 @@
+package com.example.riley.inventoryapplication.Import;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.riley.inventoryapplication.Model.ImportCheckpoint;
+import com.example.riley.inventoryapplication.Model.ProductStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * A pricebook import running on its own thread, independent of any activity. At most one
+ * import runs at a time; an activity that is recreated while an import is running picks it
+ * up again through getCurrent
+ *
+ * If an earlier import of the same, unchanged pricebook was interrupted, the job continues
+ * from its last checkpoint instead of starting over
+ *
+ * Once the import stops, a summary of it with the time spent in each stage is appended to
+ * the run log
+ */
+public class ImportJob implements Runnable {
+    /**
+     * The states an import job moves through
+     */
+    public enum Status { RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    /**
+     * Callback for the end of an import, always called on the main thread
+     */
+    public interface Listener {
+        /**
+         * Called once the import has stopped, whether it completed or not
+         * @param job The import that stopped
+         */
+        void onImportFinished(ImportJob job);
+    }
+
+    private static ImportJob current;
+
+    private final File pricebook;
+    private final ProductStore store;
+    private final ImportRunLog runLog;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile ImportPipeline pipeline;
+    private volatile boolean cancelRequested;
+    private volatile Status status = Status.RUNNING;
+    private volatile long resumedFrom;
+    private volatile long pricebookLength = -1;
+    // Only touched on the main thread
+    private Listener listener;
+    private boolean finishDelivered;
+
+    /**
+     * Constructor for an import job
+     * @param pricebook The pricebook to be imported
+     * @param store The store the pricebook is imported into
+     * @param runLog The log the summary of the import is appended to
+     */
+    private ImportJob(File pricebook, ProductStore store, ImportRunLog runLog) {
+        this.pricebook = pricebook;
+        this.store = store;
+        this.runLog = runLog;
+    }
+
+    /**
+     * Starts importing the given pricebook on a new thread, unless an import is already
+     * running, in which case that import is returned instead
+     * @param pricebook The pricebook to be imported
+     * @param store The store the pricebook is imported into
+     * @param runLog The log the summary of the import is appended to
+     * @return The running import
+     * @throws IllegalArgumentException pricebook == null || store == null || runLog == null
+     */
+    public static synchronized ImportJob start(File pricebook, ProductStore store, ImportRunLog runLog) {
+        if (pricebook == null || store == null || runLog == null) {
+            throw new IllegalArgumentException();
+        }
+        if (current == null || current.status != Status.RUNNING) {
+            current = new ImportJob(pricebook, store, runLog);
+            new Thread(current, "PricebookImport").start();
+        }
+        return current;
+    }
+
+    /**
+     * Return the running import, or the last one to have run in this process
+     * @return The current import, null if none has been started
+     */
+    public static synchronized ImportJob getCurrent() {
+        return current;
+    }
+
+    @Override
+    public void run() {
+        try {
+            ImportCheckpoint checkpoint = store.findCheckpoint(pricebook.getAbsolutePath());
+            if (checkpoint == null || !checkpoint.matches(pricebook)) {
+                checkpoint = ImportCheckpoint.start(pricebook);
+            }
+            resumedFrom = checkpoint.getOffset();
+            PricebookFile file = PricebookFile.open(pricebook);
+            pricebookLength = file.getContentLength();
+            Charset charset = Charset.defaultCharset();
+            PricebookFormat format = file.readFormat(charset, ColumnMapping.DEFAULT);
+            PricebookSource source = file.openSource(checkpoint.getOffset());
+            pipeline = new ImportPipeline(source, store, ImportPipeline.defaultWorkerCount(), charset,
+                    format, checkpoint);
+            if (cancelRequested) {
+                pipeline.cancel();
+            }
+            pipeline.run();
+            finish(pipeline.isCancelled() ? Status.CANCELLED : Status.COMPLETED);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            finish(Status.FAILED);
+        }
+    }
+
+    /**
+     * Asks the import to stop at the next chunk boundary, keeping everything committed so far
+     * so that it can be continued later
+     */
+    public void cancel() {
+        cancelRequested = true;
+        ImportPipeline running = pipeline;
+        if (running != null) {
+            running.cancel();
+        }
+    }
+
+    /**
+     * Sets the listener told when the import stops. If it has already stopped the listener
+     * is told straight away. Must be called on the main thread
+     * @param listener The listener, or null to remove the current one
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        if (listener != null && finishDelivered) {
+            listener.onImportFinished(this);
+        }
+    }
+
+    /**
+     * Return the state of this import
+     * @return The state of this import
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Return the size of the pricebook being imported, once uncompressed
+     * @return The length of the pricebook in bytes, -1 if it is not known yet
+     */
+    public long getPricebookLength() {
+        return pricebookLength;
+    }
+
+    /**
+     * Return the offset in the pricebook this import continued from, 0 if it started over
+     * @return The offset this import started reading at
+     */
+    public long getResumedFrom() {
+        return resumedFrom;
+    }
+
+    /**
+     * Return the statistics of this import
+     * @return The statistics of this import, null if it has not started reading yet
+     */
+    public ImportStatistics getStatistics() {
+        ImportPipeline running = pipeline;
+        return running == null ? null : running.getStatistics();
+    }
+
+    /**
+     * Records the final state of the import and tells the listener on the main thread
+     * @param finalStatus The state the import ended in
+     */
+    private void finish(Status finalStatus) {
+        ImportPipeline stopped = pipeline;
+        if (stopped != null) {
+            stopped.getStatistics().finish();
+        }
+        status = finalStatus;
+        if (stopped != null) {
+            try {
+                runLog.append(this, stopped.getWorkerCount());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                finishDelivered = true;
+                if (listener != null) {
+                    listener.onImportFinished(ImportJob.this);
+                }
+            }
+        });
+    }
+}
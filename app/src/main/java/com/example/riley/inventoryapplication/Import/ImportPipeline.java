@@ -0,0 +1,339 @@
+package com.example.riley.inventoryapplication.Import;
+
+import com.example.riley.inventoryapplication.Model.ImportCheckpoint;
+import com.example.riley.inventoryapplication.Model.PricebookWriter;
+import com.example.riley.inventoryapplication.Model.ProductProfile;
+import com.example.riley.inventoryapplication.Model.ProductStore;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Staged import of a pricebook into the database. A source thread cuts the pricebook into
+ * chunks of lines, several parse workers turn chunks into products, and a single writer
+ * applies the products in batches as a delta against the previous import. The writer
+ * applies chunks in pricebook order, so the first product seen for a barcode is always the
+ * one kept
+ *
+ * Only a bounded number of chunks are in flight between the source and the writer at any
+ * time, so the source stalls whenever parsing or writing falls behind and memory use does
+ * not grow with the size of the pricebook
+ *
+ * The writer commits a checkpoint with every batch, so an import that is cancelled or
+ * killed can be continued later from the last commit. Cancelling stops the import at the
+ * next chunk boundary
+ *
+ * @specfield CHUNKS_IN_FLIGHT_PER_WORKER Chunks allowed between the source and writer
+ *            for each parse worker
+ */
+public class ImportPipeline {
+    private static final int CHUNKS_IN_FLIGHT_PER_WORKER = 4;
+    private static final int WRITE_CHUNK_SIZE = 500;
+    private static final PricebookChunk END_OF_SOURCE = new PricebookChunk(null, -1);
+    private static final ParsedChunk END_OF_PARSE = new ParsedChunk(-1, -1, null, null);
+    private static final ParsedChunk WAKE_WRITER = new ParsedChunk(-1, -1, null, null);
+
+    private final PricebookSource source;
+    private final ProductStore store;
+    private final int workerCount;
+    private final Charset charset;
+    private final PricebookFormat format;
+    private final ImportCheckpoint checkpoint;
+    private final ImportStatistics statistics = new ImportStatistics();
+    private final BlockingQueue<PricebookChunk> chunks;
+    private final BlockingQueue<ParsedChunk> parsedChunks;
+    private final Semaphore chunksInFlight;
+    private volatile Throwable failure;
+    private volatile boolean cancelled, stopping;
+    private Thread writerThread;
+
+    /**
+     * Constructor for an import pipeline
+     * @param source The pricebook to import
+     * @param store The store the products are written to
+     * @param workerCount The number of parse workers
+     * @param charset The character set of the pricebook
+     * @param format The layout of the lines of the pricebook
+     * @param checkpoint The checkpoint the import starts from, which must match where the
+     *                   source starts reading
+     * @throws IllegalArgumentException source == null || store == null
+     *         || workerCount < 1 || charset == null || format == null || checkpoint == null
+     */
+    public ImportPipeline(PricebookSource source, ProductStore store, int workerCount, Charset charset,
+                          PricebookFormat format, ImportCheckpoint checkpoint) {
+        if (source == null || store == null || workerCount < 1 || charset == null || format == null
+                || checkpoint == null) {
+            throw new IllegalArgumentException();
+        }
+        this.source = source;
+        this.store = store;
+        this.workerCount = workerCount;
+        this.charset = charset;
+        this.format = format;
+        this.checkpoint = checkpoint;
+        int capacity = workerCount * CHUNKS_IN_FLIGHT_PER_WORKER;
+        chunksInFlight = new Semaphore(capacity);
+        // Room for every chunk in flight as well as the end markers and a cancellation wake up
+        chunks = new ArrayBlockingQueue<>(capacity + workerCount);
+        parsedChunks = new ArrayBlockingQueue<>(capacity + workerCount + 1);
+    }
+
+    /**
+     * Return the number of parse workers to use on this device, leaving a core for the source
+     * and writer
+     * @return The default number of parse workers
+     */
+    public static int defaultWorkerCount() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    /**
+     * Return the number of parse workers this import uses
+     * @return The number of parse workers
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Return the statistics of this import, which may be read while it is running
+     * @return The statistics of this import
+     */
+    public ImportStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Asks the import to stop at the next chunk boundary. Everything applied before then is
+     * committed along with a checkpoint, and products missing from the pricebook are not
+     * removed. May be called from any thread
+     */
+    public void cancel() {
+        cancelled = true;
+        // If the queue is full the writer is not waiting and will see the flag on its own
+        parsedChunks.offer(WAKE_WRITER);
+    }
+
+    /**
+     * Return whether the import has been asked to stop
+     * @return True if the import was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Runs the import, using the calling thread as the writer. Blocks until every product has
+     * been written, the import is cancelled or a stage has failed. The source is closed once
+     * the import ends
+     * @throws IOException If the pricebook could not be read or the import was interrupted
+     */
+    public void run() throws IOException {
+        writerThread = Thread.currentThread();
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount + 1);
+        try {
+            executor.execute(new SourceStage());
+            for (int i = 0; i < workerCount; i++) {
+                executor.execute(new ParseStage());
+            }
+            write();
+        } catch (InterruptedException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            // The other stages are interrupted from here on, which is not a failure
+            stopping = true;
+            executor.shutdownNow();
+            source.close();
+        }
+        // Clear an interrupt raised by a failing stage, so it does not leak to the caller
+        Thread.interrupted();
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    /**
+     * Records the first failure of any stage and wakes the writer so the import stops
+     * @param cause The reason the stage failed
+     */
+    private synchronized void fail(Throwable cause) {
+        if (failure == null && !stopping) {
+            failure = cause;
+            if (Thread.currentThread() != writerThread) {
+                writerThread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Drains parsed chunks in batches and applies them in pricebook order until every parse
+     * worker has finished, then removes the products that are no longer in the pricebook.
+     * Stops after the current chunk if the import is cancelled
+     * @throws InterruptedException If a stage failed while the writer was waiting
+     */
+    private void write() throws InterruptedException {
+        PricebookWriter writer = store.newDeltaWriter(WRITE_CHUNK_SIZE, checkpoint);
+        List<ParsedChunk> batch = new ArrayList<>();
+        Map<Long, ParsedChunk> waiting = new HashMap<>();
+        long nextSequence = 0;
+        int finishedWorkers = 0;
+        try {
+            while (finishedWorkers < workerCount && !cancelled) {
+                batch.add(parsedChunks.take());
+                parsedChunks.drainTo(batch);
+                long start = System.nanoTime();
+                long insertedBefore = writer.getInserted();
+                long updatedBefore = writer.getUpdated();
+                long unchangedBefore = writer.getUnchanged();
+                long duplicatedBefore = writer.getDuplicated();
+                for (ParsedChunk chunk : batch) {
+                    if (chunk == END_OF_PARSE) {
+                        finishedWorkers++;
+                    } else if (chunk != WAKE_WRITER) {
+                        waiting.put(chunk.sequence, chunk);
+                    }
+                }
+                batch.clear();
+                ParsedChunk next;
+                while (!cancelled && (next = waiting.remove(nextSequence)) != null) {
+                    for (int i = 0; i < next.products.size(); i++) {
+                        writer.apply(next.products.get(i), next.fingerprints[i]);
+                    }
+                    writer.markApplied(next.endOffset);
+                    nextSequence++;
+                    chunksInFlight.release();
+                }
+                statistics.recordWrite(writer.getInserted() - insertedBefore, writer.getUpdated() - updatedBefore,
+                        writer.getUnchanged() - unchangedBefore, writer.getDuplicated() - duplicatedBefore,
+                        System.nanoTime() - start);
+            }
+            if (!cancelled) {
+                long start = System.nanoTime();
+                statistics.recordDeletes(writer.removeStale(), System.nanoTime() - start);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Reads chunks from the source, numbering them in pricebook order
+     */
+    private class SourceStage implements Runnable {
+        @Override
+        public void run() {
+            try {
+                long sequence = 0;
+                while (!cancelled) {
+                    long start = System.nanoTime();
+                    PricebookChunk chunk = source.nextChunk();
+                    if (chunk == null) {
+                        break;
+                    }
+                    statistics.recordRead(chunk.bytes.remaining(), System.nanoTime() - start);
+                    chunk.sequence = sequence++;
+                    chunksInFlight.acquire();
+                    chunks.put(chunk);
+                }
+                for (int i = 0; i < workerCount; i++) {
+                    chunks.put(END_OF_SOURCE);
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Decodes chunks and parses their lines into products
+     */
+    private class ParseStage implements Runnable {
+        private final PricebookLineParser parser = format.newLineParser();
+        private final PricebookRecord record = new PricebookRecord();
+        private final CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private CharBuffer chars = CharBuffer.allocate(0);
+
+        @Override
+        public void run() {
+            try {
+                PricebookChunk chunk;
+                while ((chunk = chunks.take()) != END_OF_SOURCE) {
+                    parsedChunks.put(parse(chunk));
+                }
+                parsedChunks.put(END_OF_PARSE);
+            } catch (InterruptedException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Parses every line of the given chunk
+         * @param chunk The chunk to be parsed
+         * @return The products found in the chunk
+         */
+        private ParsedChunk parse(PricebookChunk chunk) {
+            long start = System.nanoTime();
+            decode(chunk);
+            char[] array = chars.array();
+            int length = chars.limit();
+            List<ProductProfile> products = new ArrayList<>();
+            long[] fingerprints = new long[64];
+            long lines = 0;
+            int lineStart = 0;
+            for (int i = 0; i <= length; i++) {
+                if (i == length || array[i] == '\n' || array[i] == '\r') {
+                    if (i > lineStart) {
+                        lines++;
+                        if (parser.parseLine(array, lineStart, i - lineStart, record)) {
+                            if (products.size() == fingerprints.length) {
+                                fingerprints = Arrays.copyOf(fingerprints, fingerprints.length * 2);
+                            }
+                            fingerprints[products.size()] = record.getFingerprint();
+                            products.add(record.toProductProfile());
+                        }
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            statistics.recordParse(lines, products.size(), System.nanoTime() - start);
+            return new ParsedChunk(chunk.sequence, chunk.endOffset, products, fingerprints);
+        }
+
+        /**
+         * Decodes the bytes of the given chunk into the reusable character buffer
+         * @param chunk The chunk to be decoded
+         */
+        private void decode(PricebookChunk chunk) {
+            int needed = (int) (chunk.bytes.remaining() * (double) decoder.maxCharsPerByte()) + 1;
+            if (chars.capacity() < needed) {
+                chars = CharBuffer.allocate(needed);
+            }
+            chars.clear();
+            decoder.reset();
+            decoder.decode(chunk.bytes, chars, true);
+            decoder.flush(chars);
+            chars.flip();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.riley.inventoryapplication.Import;
+
+/**
+ * An immutable snapshot of the progress of an import. Comparing two snapshots gives the
+ * current throughput of each stage, rather than the average since the import started
+ */
+public class ImportProgress {
+    private final long timestampNanos, elapsedNanos;
+    private final long bytesRead, linesParsed, productsParsed, rowsApplied, rowsWritten, rowsRejected;
+
+    /**
+     * Constructor for a progress snapshot
+     * @param timestampNanos The value of System.nanoTime when the snapshot was taken
+     * @param elapsedNanos The running time of the import when the snapshot was taken
+     * @param bytesRead The number of bytes of the pricebook read
+     * @param linesParsed The number of lines parsed
+     * @param productsParsed The number of products parsed
+     * @param rowsApplied The number of lines applied by the writer
+     * @param rowsWritten The number of product rows inserted, updated or deleted
+     * @param rowsRejected The number of lines which were not imported
+     */
+    ImportProgress(long timestampNanos, long elapsedNanos, long bytesRead, long linesParsed, long productsParsed,
+                   long rowsApplied, long rowsWritten, long rowsRejected) {
+        this.timestampNanos = timestampNanos;
+        this.elapsedNanos = elapsedNanos;
+        this.bytesRead = bytesRead;
+        this.linesParsed = linesParsed;
+        this.productsParsed = productsParsed;
+        this.rowsApplied = rowsApplied;
+        this.rowsWritten = rowsWritten;
+        this.rowsRejected = rowsRejected;
+    }
+
+    /**
+     * Return the running time of the import when this snapshot was taken
+     * @return The running time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Return the number of bytes of the pricebook read
+     * @return The number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Return the number of lines parsed
+     * @return The number of lines parsed
+     */
+    public long getLinesParsed() {
+        return linesParsed;
+    }
+
+    /**
+     * Return the number of products parsed
+     * @return The number of products parsed
+     */
+    public long getProductsParsed() {
+        return productsParsed;
+    }
+
+    /**
+     * Return the number of lines applied by the writer
+     * @return The number of lines applied
+     */
+    public long getRowsApplied() {
+        return rowsApplied;
+    }
+
+    /**
+     * Return the number of product rows inserted, updated or deleted
+     * @return The number of rows written
+     */
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * Return the number of lines which were not imported
+     * @return The number of rejected lines
+     */
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    /**
+     * Returns the number of products parsed per second between the given snapshot and this
+     * one, or since the start of the import if there is no earlier snapshot
+     * @param earlier An earlier snapshot of the same import, or null
+     * @return The parse throughput in products per second
+     */
+    public double getParseRateSince(ImportProgress earlier) {
+        if (earlier == null) {
+            return ImportStatistics.rate(productsParsed, elapsedNanos);
+        }
+        return ImportStatistics.rate(productsParsed - earlier.productsParsed, timestampNanos - earlier.timestampNanos);
+    }
+
+    /**
+     * Returns the number of lines applied per second between the given snapshot and this
+     * one, or since the start of the import if there is no earlier snapshot
+     * @param earlier An earlier snapshot of the same import, or null
+     * @return The write throughput in lines per second
+     */
+    public double getWriteRateSince(ImportProgress earlier) {
+        if (earlier == null) {
+            return ImportStatistics.rate(rowsApplied, elapsedNanos);
+        }
+        return ImportStatistics.rate(rowsApplied - earlier.rowsApplied, timestampNanos - earlier.timestampNanos);
+    }
+}
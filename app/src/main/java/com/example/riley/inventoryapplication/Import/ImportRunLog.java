@@ -0,0 +1,60 @@
+package com.example.riley.inventoryapplication.Import;
+
+import android.os.Build;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Appends a summary of every finished import to a tab separated file, one line per run,
+ * so that the timing of each stage can be compared across runs and devices
+ */
+public class ImportRunLog {
+    private static final String HEADER = "finished\tdevice\tsdk\tworkers\tstatus\tresumedFrom\tbytes\tlines\tproducts"
+            + "\tinserted\tupdated\tunchanged\tdeleted\trejected\treadMs\tparseMs\twriteMs\ttotalMs\n";
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    private final File file;
+
+    /**
+     * Constructor for a run log
+     * @param file The file the summaries are appended to
+     */
+    public ImportRunLog(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Appends a summary of the given finished import
+     * @param job The import which has finished
+     * @param workers The number of parse workers the import used
+     * @throws IOException If the log could not be written
+     */
+    void append(ImportJob job, int workers) throws IOException {
+        ImportStatistics statistics = job.getStatistics();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        boolean created = !file.exists();
+        Writer writer = new FileWriter(file, true);
+        try {
+            if (created) {
+                writer.write(HEADER);
+            }
+            writer.write(String.format(Locale.US, "%s\t%s %s\t%d\t%d\t%s\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d\n",
+                    format.format(new Date()), Build.MANUFACTURER, Build.MODEL, Build.VERSION.SDK_INT, workers,
+                    job.getStatus(), job.getResumedFrom(), statistics.getBytesRead(), statistics.getLinesParsed(),
+                    statistics.getProductsParsed(), statistics.getRowsInserted(), statistics.getRowsUpdated(),
+                    statistics.getRowsUnchanged(), statistics.getRowsDeleted(), statistics.getRowsRejected(),
+                    statistics.getReadNanos() / NANOS_PER_MILLI, statistics.getParseNanos() / NANOS_PER_MILLI,
+                    statistics.getWriteNanos() / NANOS_PER_MILLI, statistics.getElapsedNanos() / NANOS_PER_MILLI));
+        } finally {
+            writer.close();
+        }
+    }
+}
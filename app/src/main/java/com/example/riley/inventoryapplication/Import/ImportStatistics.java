@@ -0,0 +1,235 @@
+package com.example.riley.inventoryapplication.Import;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for a running import, kept separately for the read, parse and write stages so
+ * that the throughput of each stage can be measured on its own. Safe to read from any
+ * thread while the import is running
+ */
+public class ImportStatistics {
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final long startNanos = System.nanoTime();
+    private volatile long finishNanos;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong readNanos = new AtomicLong();
+    private final AtomicLong linesParsed = new AtomicLong();
+    private final AtomicLong linesRejected = new AtomicLong();
+    private final AtomicLong productsParsed = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private final AtomicLong rowsInserted = new AtomicLong();
+    private final AtomicLong rowsUpdated = new AtomicLong();
+    private final AtomicLong rowsUnchanged = new AtomicLong();
+    private final AtomicLong rowsDuplicated = new AtomicLong();
+    private final AtomicLong rowsDeleted = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+
+    /**
+     * Records a chunk read by the source
+     * @param bytes The number of bytes in the chunk
+     * @param nanos The time the source spent reading the chunk
+     */
+    void recordRead(long bytes, long nanos) {
+        bytesRead.addAndGet(bytes);
+        readNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Records a chunk handled by a parse worker
+     * @param lines The number of lines in the chunk
+     * @param products The number of products parsed from the chunk
+     * @param nanos The time the worker spent on the chunk
+     */
+    void recordParse(long lines, long products, long nanos) {
+        linesParsed.addAndGet(lines);
+        linesRejected.addAndGet(lines - products);
+        productsParsed.addAndGet(products);
+        parseNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Records a batch handled by the writer
+     * @param inserted The number of products inserted
+     * @param updated The number of products rewritten because their line changed
+     * @param unchanged The number of lines left alone because they had not changed
+     * @param duplicated The number of lines skipped because their barcode was already imported
+     * @param nanos The time the writer spent on the batch
+     */
+    void recordWrite(long inserted, long updated, long unchanged, long duplicated, long nanos) {
+        rowsInserted.addAndGet(inserted);
+        rowsUpdated.addAndGet(updated);
+        rowsUnchanged.addAndGet(unchanged);
+        rowsDuplicated.addAndGet(duplicated);
+        writeNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Records the removal of products that are no longer in the pricebook
+     * @param deleted The number of products removed
+     * @param nanos The time the writer spent removing them
+     */
+    void recordDeletes(long deleted, long nanos) {
+        rowsDeleted.addAndGet(deleted);
+        writeNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Records that the import has stopped
+     */
+    void finish() {
+        finishNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes a consistent enough copy of the counters for display. Counters are read one at
+     * a time, so a snapshot taken mid-batch may be a few rows out of step between stages
+     * @return The progress of the import at this moment
+     */
+    public ImportProgress snapshot() {
+        return new ImportProgress(System.nanoTime(), getElapsedNanos(), bytesRead.get(), linesParsed.get(),
+                productsParsed.get(), getRowsApplied(), getRowsWritten(), getRowsRejected());
+    }
+
+    /**
+     * Return the time since the import started, or its total time once it has stopped
+     * @return The running time of the import in nanoseconds
+     */
+    public long getElapsedNanos() {
+        long finish = finishNanos;
+        return (finish == 0 ? System.nanoTime() : finish) - startNanos;
+    }
+
+    /**
+     * Return the number of bytes of the pricebook read so far
+     * @return The number of bytes read so far
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * Return the number of non-empty lines parsed so far
+     * @return The number of lines parsed so far
+     */
+    public long getLinesParsed() {
+        return linesParsed.get();
+    }
+
+    /**
+     * Return the number of products parsed so far
+     * @return The number of products parsed so far
+     */
+    public long getProductsParsed() {
+        return productsParsed.get();
+    }
+
+    /**
+     * Return the number of lines applied by the writer, whether or not they changed anything
+     * @return The number of lines applied so far
+     */
+    public long getRowsApplied() {
+        return rowsInserted.get() + rowsUpdated.get() + rowsUnchanged.get();
+    }
+
+    /**
+     * Return the number of product rows inserted, updated or deleted so far
+     * @return The number of rows written so far
+     */
+    public long getRowsWritten() {
+        return rowsInserted.get() + rowsUpdated.get() + rowsDeleted.get();
+    }
+
+    /**
+     * Return the number of lines which were not imported, either because they held no
+     * product or because their barcode had already been imported
+     * @return The number of rejected lines so far
+     */
+    public long getRowsRejected() {
+        return linesRejected.get() + rowsDuplicated.get();
+    }
+
+    /**
+     * Return the number of barcodes imported for the first time so far
+     * @return The number of rows inserted so far
+     */
+    public long getRowsInserted() {
+        return rowsInserted.get();
+    }
+
+    /**
+     * Return the number of products rewritten because their line changed so far
+     * @return The number of rows updated so far
+     */
+    public long getRowsUpdated() {
+        return rowsUpdated.get();
+    }
+
+    /**
+     * Return the number of lines left alone because they matched the previous import
+     * @return The number of unchanged rows so far
+     */
+    public long getRowsUnchanged() {
+        return rowsUnchanged.get();
+    }
+
+    /**
+     * Return the number of products removed because they left the pricebook
+     * @return The number of rows deleted so far
+     */
+    public long getRowsDeleted() {
+        return rowsDeleted.get();
+    }
+
+    /**
+     * Return the time the source spent reading the pricebook
+     * @return The read time in nanoseconds
+     */
+    public long getReadNanos() {
+        return readNanos.get();
+    }
+
+    /**
+     * Return the time spent parsing, summed over every parse worker
+     * @return The parse time in nanoseconds
+     */
+    public long getParseNanos() {
+        return parseNanos.get();
+    }
+
+    /**
+     * Return the time the writer spent writing
+     * @return The write time in nanoseconds
+     */
+    public long getWriteNanos() {
+        return writeNanos.get();
+    }
+
+    /**
+     * Return the number of products parsed per second of parse worker time. With several
+     * workers the stage as a whole parses this many products per second on each of them
+     * @return The parse throughput of a single worker, in products per second
+     */
+    public double getParseRate() {
+        return rate(productsParsed.get(), parseNanos.get());
+    }
+
+    /**
+     * Return the number of lines applied, whether or not they changed anything, per second
+     * the writer spent writing
+     * @return The write throughput, in lines per second
+     */
+    public double getWriteRate() {
+        return rate(getRowsApplied(), writeNanos.get());
+    }
+
+    /**
+     * Returns the number of events per second
+     * @param count The number of events
+     * @param nanos The time taken by the events
+     * @return The rate of events per second, 0 if no time has passed
+     */
+    static double rate(long count, long nanos) {
+        return nanos <= 0 ? 0 : count * NANOS_PER_SECOND / nanos;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.riley.inventoryapplication.Import;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Pricebook source which memory-maps the pricebook file and hands out slices of the mapping
+ * cut at line boundaries. No bytes are copied onto the heap; parse workers decode straight
+ * from the page cache, so heap use does not depend on the size of the pricebook
+ *
+ * The file is mapped a window at a time, since a single mapping cannot exceed 2GB and a
+ * smaller window keeps the address space used by the import modest. A window always starts
+ * at the beginning of a line
+ *
+ * @specfield DEFAULT_WINDOW_SIZE The usual number of bytes mapped at once
+ */
+public class MappedPricebookSource implements PricebookSource {
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    // Representation invariant
+    //  window == null || windowStart + window.limit() <= length
+    //  window == null || windowStart <= offset <= windowStart + window.limit()
+    //  offset is the start of a line, or length
+
+    private final FileInputStream input;
+    private final FileChannel channel;
+    private final long length;
+    private final int chunkSize;
+    private final int windowSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long offset;
+
+    /**
+     * Constructor for a mapped source with the default chunk and window sizes
+     * @param pricebook The pricebook file
+     * @param startOffset The offset of the first byte to read
+     * @throws IOException If the file could not be opened
+     * @throws IllegalArgumentException pricebook == null || startOffset < 0
+     */
+    public MappedPricebookSource(File pricebook, long startOffset) throws IOException {
+        this(pricebook, StreamPricebookSource.DEFAULT_CHUNK_SIZE, DEFAULT_WINDOW_SIZE, startOffset);
+    }
+
+    /**
+     * Constructor for a mapped source
+     * @requires startOffset is the offset of the start of a line
+     * @param pricebook The pricebook file
+     * @param chunkSize The usual number of bytes in each chunk
+     * @param windowSize The usual number of bytes mapped at once
+     * @param startOffset The offset of the first byte to read
+     * @throws IOException If the file could not be opened
+     * @throws IllegalArgumentException pricebook == null || chunkSize < 1
+     *         || windowSize < chunkSize || startOffset < 0
+     */
+    public MappedPricebookSource(File pricebook, int chunkSize, int windowSize, long startOffset)
+            throws IOException {
+        if (pricebook == null || chunkSize < 1 || windowSize < chunkSize || startOffset < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.input = new FileInputStream(pricebook);
+        this.channel = input.getChannel();
+        this.length = channel.size();
+        this.chunkSize = chunkSize;
+        this.windowSize = windowSize;
+        this.offset = Math.min(startOffset, length);
+    }
+
+    @Override
+    public PricebookChunk nextChunk() throws IOException {
+        if (offset >= length) {
+            return null;
+        }
+        int mapSize = windowSize;
+        while (true) {
+            if (window == null || windowStart + window.limit() == offset) {
+                map(mapSize);
+            }
+            int start = (int) (offset - windowStart);
+            int end = Math.min(start + chunkSize, window.limit());
+            if (windowStart + end < length) {
+                int lineEnd = lastLineEnd(window, start, end);
+                if (lineEnd < 0) {
+                    // No line ends within a chunk, so take the rest of the line from this window
+                    lineEnd = firstLineEnd(window, end, window.limit());
+                }
+                if (lineEnd < 0 && windowStart + window.limit() == length) {
+                    // The last line has no terminator
+                    lineEnd = window.limit();
+                } else if (lineEnd < 0) {
+                    if (start == 0) {
+                        // A single line is longer than the window, so map a larger one
+                        mapSize = (int) Math.min(Integer.MAX_VALUE, mapSize * 2L);
+                    }
+                    // Map the next window from the start of the unfinished line
+                    window = null;
+                    continue;
+                }
+                end = lineEnd;
+            }
+            ByteBuffer slice = window.duplicate();
+            slice.limit(end).position(start);
+            offset = windowStart + end;
+            return new PricebookChunk(slice.slice(), offset);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        input.close();
+    }
+
+    /**
+     * Maps a new window starting at the current offset
+     * @param size The largest number of bytes to map
+     * @throws IOException If the file could not be mapped
+     */
+    private void map(int size) throws IOException {
+        windowStart = offset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(size, length - windowStart));
+    }
+
+    /**
+     * Finds the end of the first complete line between the given indices of the buffer
+     * @param buffer The buffer to search
+     * @param start The index to search from
+     * @param end The index to search up to, exclusive
+     * @return The index after the first line terminator, -1 if there is none
+     */
+    private static int firstLineEnd(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the end of the last complete line between the given indices of the buffer
+     * @param buffer The buffer to search
+     * @param start The index to search from
+     * @param end The index to search up to, exclusive
+     * @return The index after the last line terminator, -1 if there is none
+     */
+    private static int lastLineEnd(ByteBuffer buffer, int start, int end) {
+        for (int i = end - 1; i >= start; i--) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.riley.inventoryapplication.Import;
+
+import com.example.riley.inventoryapplication.Model.ProductProfile;
+
+import java.util.List;
+
+/**
+ * The products parsed from a single chunk, handed from a parse worker to the writer
+ */
+class ParsedChunk {
+    final long sequence;
+    final long endOffset;
+    final List<ProductProfile> products;
+    final long[] fingerprints;
+
+    /**
+     * Constructor for a parsed chunk
+     * @param sequence The position of the chunk this came from in the pricebook
+     * @param endOffset The offset in the pricebook of the byte after the chunk
+     * @param products The products parsed from the chunk
+     * @param fingerprints The fingerprints of the lines the products came from, where
+     *                     fingerprints[i] belongs to products.get(i)
+     */
+    ParsedChunk(long sequence, long endOffset, List<ProductProfile> products, long[] fingerprints) {
+        this.sequence = sequence;
+        this.endOffset = endOffset;
+        this.products = products;
+        this.fingerprints = fingerprints;
+    }
+}
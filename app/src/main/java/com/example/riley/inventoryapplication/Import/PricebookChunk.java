@@ -0,0 +1,23 @@
+package com.example.riley.inventoryapplication.Import;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A run of whole pricebook lines, as raw bytes, handed from the source stage of an
+ * import to a parse worker
+ */
+public class PricebookChunk {
+    final ByteBuffer bytes;
+    final long endOffset;
+    long sequence;
+
+    /**
+     * Constructor for a chunk
+     * @param bytes The bytes of the lines in this chunk, between position and limit
+     * @param endOffset The offset in the pricebook of the byte after this chunk
+     */
+    public PricebookChunk(ByteBuffer bytes, long endOffset) {
+        this.bytes = bytes;
+        this.endOffset = endOffset;
+    }
+}
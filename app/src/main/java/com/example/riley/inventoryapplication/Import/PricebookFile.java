@@ -0,0 +1,239 @@
+package com.example.riley.inventoryapplication.Import;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * A pricebook file on disk, which may be a plain text pricebook, a comma or tab separated
+ * export, or either of those compressed with gzip or inside a zip archive. Compressed
+ * pricebooks are decompressed as they are read rather than unpacked first, and the offsets
+ * of their chunks and checkpoints count decompressed bytes
+ *
+ * The kind of pricebook is decided by its file name: a .gz or .zip extension for the
+ * compression, then .csv, .tsv or anything else for the format. For a zip archive the name
+ * of its first file is used for the format
+ */
+public class PricebookFile {
+    private static final String NAME_PREFIX = "pricebook";
+    private static final String[] EXTENSIONS = {".txt", ".csv", ".tsv"};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private enum Compression { NONE, GZIP, ZIP }
+
+    private final File file;
+    private final Compression compression;
+    private final String contentName;
+    private final long contentLength;
+
+    /**
+     * Constructor for a pricebook file
+     * @param file The file on disk
+     * @param compression How the file is compressed
+     * @param contentName The name of the uncompressed pricebook
+     * @param contentLength The length of the uncompressed pricebook, -1 if it is unknown
+     */
+    private PricebookFile(File file, Compression compression, String contentName, long contentLength) {
+        this.file = file;
+        this.compression = compression;
+        this.contentName = contentName;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Opens the given pricebook, working out how it is compressed and formatted
+     * @param file The pricebook file
+     * @return The pricebook
+     * @throws IOException If the file is a zip archive which could not be read or is empty
+     * @throws IllegalArgumentException file == null
+     */
+    public static PricebookFile open(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException();
+        }
+        String name = file.getName().toLowerCase(Locale.US);
+        if (name.endsWith(".gz")) {
+            return new PricebookFile(file, Compression.GZIP, name.substring(0, name.length() - 3), readGzipLength(file));
+        } else if (name.endsWith(".zip")) {
+            ZipInputStream zip = new ZipInputStream(new FileInputStream(file));
+            try {
+                ZipEntry entry = nextFileEntry(zip);
+                return new PricebookFile(file, Compression.ZIP, entry.getName().toLowerCase(Locale.US), entry.getSize());
+            } finally {
+                zip.close();
+            }
+        }
+        return new PricebookFile(file, Compression.NONE, name, file.length());
+    }
+
+    /**
+     * Finds the most recently modified pricebook in the given directory: a file whose name
+     * starts with "pricebook", ignoring case, in any of the supported formats
+     * @param directory The directory to search
+     * @return The newest pricebook in the directory, null if there is none
+     */
+    public static File find(File directory) {
+        File[] files = directory == null ? null : directory.listFiles();
+        File newest = null;
+        if (files != null) {
+            for (File candidate : files) {
+                if (candidate.isFile() && isPricebookName(candidate.getName().toLowerCase(Locale.US))
+                        && (newest == null || candidate.lastModified() > newest.lastModified())) {
+                    newest = candidate;
+                }
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Return the file on disk
+     * @return The pricebook file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Return the length of the pricebook once uncompressed, which is what import offsets count
+     * @return The uncompressed length in bytes, -1 if it is unknown
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Opens a source over the uncompressed pricebook. Plain files are memory-mapped, while
+     * compressed files are streamed through a decompressor
+     * @requires startOffset is the offset of the start of a line in the uncompressed pricebook
+     * @param startOffset The offset of the first byte to read
+     * @return A source over the pricebook
+     * @throws IOException If the file could not be opened
+     */
+    public PricebookSource openSource(long startOffset) throws IOException {
+        if (compression == Compression.NONE) {
+            return new MappedPricebookSource(file, startOffset);
+        }
+        return new StreamPricebookSource(openContent(), StreamPricebookSource.DEFAULT_CHUNK_SIZE, startOffset);
+    }
+
+    /**
+     * Works out the format of the pricebook, reading the header line of a delimited export
+     * @param charset The character set of the pricebook
+     * @param mapping The names of the columns to import from a delimited export
+     * @return The format of the pricebook
+     * @throws IOException If the header could not be read or lacks a mapped column
+     */
+    public PricebookFormat readFormat(Charset charset, ColumnMapping mapping) throws IOException {
+        char delimiter;
+        if (contentName.endsWith(".csv")) {
+            delimiter = ',';
+        } else if (contentName.endsWith(".tsv")) {
+            delimiter = '\t';
+        } else {
+            return PricebookFormat.TEXT;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(openContent(), charset));
+        try {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IOException("Pricebook is empty");
+            }
+            return DelimitedFormat.fromHeader(delimiter, header, mapping);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Opens a stream over the uncompressed contents of the file
+     * @return A stream over the pricebook
+     * @throws IOException If the file could not be opened
+     */
+    private InputStream openContent() throws IOException {
+        InputStream input = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        try {
+            if (compression == Compression.GZIP) {
+                return new GZIPInputStream(input, BUFFER_SIZE);
+            } else if (compression == Compression.ZIP) {
+                ZipInputStream zip = new ZipInputStream(input);
+                nextFileEntry(zip);
+                return zip;
+            }
+            return input;
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the uncompressed length recorded at the end of a gzip file. The length is only
+     * stored modulo 2^32, so it is treated as unknown if the file could be larger than that
+     * @param file The gzip file
+     * @return The uncompressed length in bytes, -1 if it is unknown
+     * @throws IOException If the file could not be read
+     */
+    private static long readGzipLength(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            long length = input.length();
+            if (length < 4 || length > Integer.MAX_VALUE) {
+                return -1;
+            }
+            input.seek(length - 4);
+            // The length is stored little endian
+            return Integer.reverseBytes(input.readInt()) & 0xffffffffL;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Moves the archive to its next file, skipping directories
+     * @param zip The archive
+     * @return The entry of the file
+     * @throws IOException If the archive could not be read or has no more files
+     */
+    private static ZipEntry nextFileEntry(ZipInputStream zip) throws IOException {
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (!entry.isDirectory()) {
+                return entry;
+            }
+        }
+        throw new IOException("Archive does not contain a pricebook");
+    }
+
+    /**
+     * Returns whether the given lower case file name is a pricebook in a supported format
+     * @param name The file name
+     * @return True if the file should be offered for import
+     */
+    private static boolean isPricebookName(String name) {
+        if (!name.startsWith(NAME_PREFIX)) {
+            return false;
+        }
+        if (name.endsWith(".zip")) {
+            return true;
+        } else if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        for (String extension : EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
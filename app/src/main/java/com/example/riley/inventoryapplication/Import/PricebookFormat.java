@@ -0,0 +1,21 @@
+package com.example.riley.inventoryapplication.Import;
+
+/**
+ * The layout of the lines of a pricebook, which creates a line parser for each parse worker
+ *
+ * @specfield TEXT The whitespace separated pricebook format exported by the distributor
+ */
+public interface PricebookFormat {
+    PricebookFormat TEXT = new PricebookFormat() {
+        @Override
+        public PricebookLineParser newLineParser() {
+            return new PricebookTokenizer();
+        }
+    };
+
+    /**
+     * Creates a parser for lines in this format
+     * @return A new line parser, to be used by a single thread
+     */
+    PricebookLineParser newLineParser();
+}
@@ -0,0 +1,18 @@
+package com.example.riley.inventoryapplication.Import;
+
+/**
+ * Turns single lines of a pricebook into records. A parser may keep scratch state between
+ * lines, so each parse worker uses its own
+ */
+public interface PricebookLineParser {
+
+    /**
+     * Parses a single line of a pricebook
+     * @param chars The characters containing the line
+     * @param offset The index of the first character of the line
+     * @param length The number of characters in the line, not including the line terminator
+     * @param record The record to be filled with the product on this line
+     * @return True if the line contained a product, false if it should be skipped
+     */
+    boolean parseLine(char[] chars, int offset, int length, PricebookRecord record);
+}
@@ -0,0 +1,102 @@
+package com.example.riley.inventoryapplication.Import;
+
+import com.example.riley.inventoryapplication.Model.ProductProfile;
+
+/**
+ * Holder for the fields of a single pricebook line. A tokenizer refills the same record
+ * for every line it parses, so reading a pricebook does not allocate a record per line
+ */
+public class PricebookRecord {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Representation invariant
+    //  After a successful parse brand != null, product != null, trailingColumns != null
+    //  and Gtin.isValid(barcode)
+
+    private String brand, product, trailingColumns;
+    private long barcode;
+
+    /**
+     * Sets every field of this record
+     * @param brand The brand of the product
+     * @param barcode The GTIN of the product
+     * @param product The name of the product
+     * @param trailingColumns The trailing pricing columns, separated by single spaces
+     */
+    void set(String brand, long barcode, String product, String trailingColumns) {
+        this.brand = brand;
+        this.barcode = barcode;
+        this.product = product;
+        this.trailingColumns = trailingColumns;
+    }
+
+    /**
+     * Return the brand of the product on this line
+     * @return The brand of the product on this line
+     */
+    public String getBrand() {
+        return brand;
+    }
+
+    /**
+     * Return the barcode of the product on this line, normalized to a GTIN including the
+     * check digit
+     * @return The GTIN of the product on this line
+     */
+    public long getBarcode() {
+        return barcode;
+    }
+
+    /**
+     * Return the name of the product on this line
+     * @return The name of the product on this line
+     */
+    public String getProduct() {
+        return product;
+    }
+
+    /**
+     * Return the trailing pricing columns of this line
+     * @return The trailing columns of this line, separated by single spaces
+     */
+    public String getTrailingColumns() {
+        return trailingColumns;
+    }
+
+    /**
+     * Returns a 64 bit FNV-1a hash of the brand, product and trailing columns of this line,
+     * used to tell whether a line has changed since a previous import
+     * @return The fingerprint of this line
+     */
+    public long getFingerprint() {
+        long hash = FNV_OFFSET_BASIS;
+        hash = hash(hash, brand);
+        hash = hash(hash, product);
+        return hash(hash, trailingColumns);
+    }
+
+    /**
+     * Folds the characters of the given field, followed by a separator, into the hash
+     * @param hash The hash so far
+     * @param field The field to be hashed
+     * @return The updated hash
+     */
+    private static long hash(long hash, String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        // Separate fields so that moving a word between fields changes the hash
+        return (hash ^ 0xff) * FNV_PRIME;
+    }
+
+    /**
+     * Creates a product profile from the current contents of this record
+     * @return A new product profile matching this record
+     */
+    public ProductProfile toProductProfile() {
+        return new ProductProfile(barcode, brand, product);
+    }
+}
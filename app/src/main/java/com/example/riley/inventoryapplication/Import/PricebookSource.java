@@ -0,0 +1,23 @@
+package com.example.riley.inventoryapplication.Import;
+
+import java.io.IOException;
+
+/**
+ * A pricebook split into chunks of whole lines, read by the source stage of an import
+ */
+public interface PricebookSource {
+
+    /**
+     * Returns the next chunk of the pricebook. Every chunk ends at the end of a line, except
+     * possibly the last
+     * @return The next chunk of lines, null once the whole pricebook has been returned
+     * @throws IOException If the pricebook could not be read
+     */
+    PricebookChunk nextChunk() throws IOException;
+
+    /**
+     * Releases the file or stream behind this source
+     * @throws IOException If the source could not be closed
+     */
+    void close() throws IOException;
+}
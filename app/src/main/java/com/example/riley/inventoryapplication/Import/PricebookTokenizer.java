@@ -0,0 +1,332 @@
+package com.example.riley.inventoryapplication.Import;
+
+import com.example.riley.inventoryapplication.Model.Gtin;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Single pass tokenizer for pricebook lines. Lines are read from a buffered character
+ * stream into a reusable line buffer and split on whitespace by recording token offsets,
+ * so neither the whole file nor the individual tokens are ever held as strings
+ *
+ * A line is made up of the brand, the barcode, the product name and EXTRA_ELEMENTS
+ * trailing pricing columns. The barcode is the first number of at least 100 that directly
+ * follows a word of the brand; smaller numbers are treated as part of the brand. Lines whose
+ * barcode is not a valid GTIN once normalized are skipped
+ *
+ * @specfield EXTRA_ELEMENTS The number of pricing columns that follow the product name
+ */
+public class PricebookTokenizer implements PricebookLineParser {
+    public static final int EXTRA_ELEMENTS = 7;
+    private static final int BUFFER_SIZE = 8192;
+    private static final long MIN_BARCODE = 100;
+    // Lines containing any of these are headers or contact information, not products
+    private static final char[][] SKIPPED_MARKERS = {
+            "Grocery".toCharArray(), "$Unit".toCharArray(), "Contact".toCharArray()};
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int bufferPosition, bufferLimit;
+    private boolean skipLineFeed;
+    private char[] line = new char[256];
+    private int lineLength;
+    private long linesRead;
+
+    private int[] tokenStart = new int[32];
+    private int[] tokenEnd = new int[32];
+    private int tokenCount;
+    private long number;
+    private int numberDigits;
+    private final StringBuilder builder = new StringBuilder();
+
+    /**
+     * Constructor for a tokenizer which only parses lines handed to parseLine
+     */
+    public PricebookTokenizer() {
+        this(null);
+    }
+
+    /**
+     * Constructor for a tokenizer which streams lines from the given reader
+     * @param reader The reader containing the pricebook
+     */
+    public PricebookTokenizer(Reader reader) {
+        this.reader = reader;
+        this.buffer = reader == null ? null : new char[BUFFER_SIZE];
+    }
+
+    /**
+     * Reads lines until one of them contains a product, filling the given record with it
+     * @requires this tokenizer was constructed with a reader
+     * @param record The record to be filled with the next product
+     * @return True if the record was filled, false if the end of the stream was reached
+     * @throws IOException If the underlying reader fails
+     */
+    public boolean next(PricebookRecord record) throws IOException {
+        while (readLine()) {
+            if (parseLine(line, 0, lineLength, record)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the number of lines read from the stream so far
+     * @return The number of lines read so far
+     */
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    /**
+     * Parses a single line of a pricebook
+     * @param chars The characters containing the line
+     * @param offset The index of the first character of the line
+     * @param length The number of characters in the line, not including the line terminator
+     * @param record The record to be filled with the product on this line
+     * @return True if the line contained a product, false if it should be skipped
+     */
+    @Override
+    public boolean parseLine(char[] chars, int offset, int length, PricebookRecord record) {
+        if (length <= 1 || containsMarker(chars, offset, length)) {
+            return false;
+        }
+        tokenize(chars, offset, length);
+        builder.setLength(0);
+        int index = 0;
+        while (index < tokenCount && !readNumber(chars, index)) {
+            appendToken(chars, index++);
+            if (index < tokenCount && readNumber(chars, index)) {
+                index++;
+                if (number < MIN_BARCODE) {
+                    builder.append(number).append(' ');
+                } else {
+                    return finishRecord(chars, index, record);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fills the record with the brand collected so far, the barcode in number, and the product
+     * and trailing columns starting at the given token
+     * @param chars The characters containing the line
+     * @param index The index of the first token after the barcode
+     * @param record The record to be filled
+     * @return True if enough tokens remain for a product, false otherwise
+     */
+    private boolean finishRecord(char[] chars, int index, PricebookRecord record) {
+        int productEnd = tokenCount - EXTRA_ELEMENTS;
+        if (productEnd < index) {
+            return false;
+        }
+        long barcode = Gtin.fromPricebook(number, numberDigits);
+        if (barcode == Gtin.INVALID) {
+            return false;
+        }
+        String brand = builder.toString();
+        builder.setLength(0);
+        for (int i = index; i < productEnd; i++) {
+            appendToken(chars, i);
+        }
+        String product = builder.toString();
+        builder.setLength(0);
+        for (int i = productEnd; i < tokenCount; i++) {
+            if (i > productEnd) {
+                builder.append(' ');
+            }
+            builder.append(chars, tokenStart[i], tokenEnd[i] - tokenStart[i]);
+        }
+        record.set(brand, barcode, product, builder.toString());
+        return true;
+    }
+
+    /**
+     * Reads the next line of the stream into the line buffer
+     * @return True if a line was read, false at the end of the stream
+     * @throws IOException If the underlying reader fails
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        while (true) {
+            if (bufferPosition == bufferLimit) {
+                bufferLimit = reader.read(buffer, 0, buffer.length);
+                bufferPosition = 0;
+                if (bufferLimit <= 0) {
+                    bufferLimit = 0;
+                    if (lineLength > 0) {
+                        linesRead++;
+                        return true;
+                    }
+                    return false;
+                }
+            }
+            char c = buffer[bufferPosition++];
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (c == '\n') {
+                    continue;
+                }
+            }
+            if (c == '\n' || c == '\r') {
+                skipLineFeed = c == '\r';
+                linesRead++;
+                return true;
+            }
+            if (lineLength == line.length) {
+                char[] larger = new char[line.length * 2];
+                System.arraycopy(line, 0, larger, 0, lineLength);
+                line = larger;
+            }
+            line[lineLength++] = c;
+        }
+    }
+
+    /**
+     * Records the start and end offsets of every whitespace separated token in the line
+     * @param chars The characters containing the line
+     * @param offset The index of the first character of the line
+     * @param length The number of characters in the line
+     */
+    private void tokenize(char[] chars, int offset, int length) {
+        tokenCount = 0;
+        int end = offset + length;
+        int index = offset;
+        while (index < end) {
+            while (index < end && Character.isWhitespace(chars[index])) {
+                index++;
+            }
+            if (index == end) {
+                return;
+            }
+            if (tokenCount == tokenStart.length) {
+                int[] largerStart = new int[tokenCount * 2];
+                int[] largerEnd = new int[tokenCount * 2];
+                System.arraycopy(tokenStart, 0, largerStart, 0, tokenCount);
+                System.arraycopy(tokenEnd, 0, largerEnd, 0, tokenCount);
+                tokenStart = largerStart;
+                tokenEnd = largerEnd;
+            }
+            tokenStart[tokenCount] = index;
+            while (index < end && !Character.isWhitespace(chars[index])) {
+                index++;
+            }
+            tokenEnd[tokenCount++] = index;
+        }
+    }
+
+    /**
+     * Appends the given token and a trailing space to the builder
+     * @param chars The characters containing the line
+     * @param index The index of the token to append
+     */
+    private void appendToken(char[] chars, int index) {
+        builder.append(chars, tokenStart[index], tokenEnd[index] - tokenStart[index]).append(' ');
+    }
+
+    /**
+     * Determines whether the given token is a whole number that fits in a long. If it is, its
+     * value is stored in number, and how many digits it was written with in numberDigits.
+     * Accepts an optional sign and comma separated thousands, the same forms
+     * java.util.Scanner accepts for a long
+     * @param chars The characters containing the line
+     * @param index The index of the token to read
+     * @return True if the token is a long, false otherwise
+     */
+    private boolean readNumber(char[] chars, int index) {
+        int position = tokenStart[index];
+        int end = tokenEnd[index];
+        boolean negative = false;
+        if (chars[position] == '-' || chars[position] == '+') {
+            negative = chars[position] == '-';
+            position++;
+        }
+        if (position == end) {
+            return false;
+        }
+        boolean grouped = false;
+        for (int i = position; i < end; i++) {
+            if (chars[i] == ',') {
+                grouped = true;
+            } else if (Character.digit(chars[i], 10) < 0) {
+                return false;
+            }
+        }
+        if (grouped && !isGrouped(chars, position, end)) {
+            return false;
+        }
+        // Accumulate negatively so that Long.MIN_VALUE can be represented
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        int digits = 0;
+        for (int i = position; i < end; i++) {
+            if (chars[i] == ',') {
+                continue;
+            }
+            int digit = Character.digit(chars[i], 10);
+            if (result < limit / 10 || result * 10 < limit + digit) {
+                return false;
+            }
+            result = result * 10 - digit;
+            digits++;
+        }
+        number = negative ? result : -result;
+        numberDigits = digits;
+        return true;
+    }
+
+    /**
+     * Determines whether the digits between position and end are properly grouped into
+     * thousands, with one to three leading digits, the first of which is not zero
+     * @param chars The characters containing the token
+     * @param position The index of the first digit
+     * @param end The index after the last digit
+     * @return True if the digits are properly grouped, false otherwise
+     */
+    private static boolean isGrouped(char[] chars, int position, int end) {
+        int lead = 0;
+        while (position + lead < end && chars[position + lead] != ',') {
+            lead++;
+        }
+        if (lead == 0 || lead > 3 || Character.digit(chars[position], 10) == 0) {
+            return false;
+        }
+        for (int i = position + lead; i < end; i += 4) {
+            if (end - i < 4 || chars[i] != ',') {
+                return false;
+            }
+            for (int j = i + 1; j < i + 4; j++) {
+                if (chars[j] == ',') {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether the line contains any of the markers of lines that hold no product
+     * @param chars The characters containing the line
+     * @param offset The index of the first character of the line
+     * @param length The number of characters in the line
+     * @return True if the line contains a marker, false otherwise
+     */
+    private static boolean containsMarker(char[] chars, int offset, int length) {
+        for (char[] marker : SKIPPED_MARKERS) {
+            int last = offset + length - marker.length;
+            for (int start = offset; start <= last; start++) {
+                int matched = 0;
+                while (matched < marker.length && chars[start + matched] == marker[matched]) {
+                    matched++;
+                }
+                if (matched == marker.length) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
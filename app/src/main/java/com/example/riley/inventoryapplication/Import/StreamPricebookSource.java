@@ -0,0 +1,143 @@
+package com.example.riley.inventoryapplication.Import;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Pricebook source which reads an input stream sequentially, cutting it into chunks at
+ * line boundaries
+ *
+ * @specfield DEFAULT_CHUNK_SIZE The usual number of bytes read for each chunk
+ */
+public class StreamPricebookSource implements PricebookSource {
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final InputStream input;
+    private final int chunkSize;
+    private byte[] carry = EMPTY;
+    private long offset;
+    private long skipTo;
+    private boolean finished;
+
+    /**
+     * Constructor for a stream source with the default chunk size
+     * @param input The stream containing the pricebook
+     */
+    public StreamPricebookSource(InputStream input) {
+        this(input, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor for a stream source
+     * @param input The stream containing the pricebook
+     * @param chunkSize The usual number of bytes read for each chunk
+     * @throws IllegalArgumentException input == null || chunkSize < 1
+     */
+    public StreamPricebookSource(InputStream input, int chunkSize) {
+        this(input, chunkSize, 0);
+    }
+
+    /**
+     * Constructor for a stream source which starts part way through the pricebook
+     * @requires startOffset is the offset of the start of a line
+     * @param input The stream containing the pricebook
+     * @param chunkSize The usual number of bytes read for each chunk
+     * @param startOffset The number of bytes to skip before the first chunk
+     * @throws IllegalArgumentException input == null || chunkSize < 1 || startOffset < 0
+     */
+    public StreamPricebookSource(InputStream input, int chunkSize, long startOffset) {
+        if (input == null || chunkSize < 1 || startOffset < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.input = input;
+        this.chunkSize = chunkSize;
+        this.skipTo = startOffset;
+    }
+
+    @Override
+    public PricebookChunk nextChunk() throws IOException {
+        if (finished) {
+            return null;
+        }
+        if (offset < skipTo) {
+            skipToStart();
+            if (finished) {
+                return null;
+            }
+        }
+        byte[] data = new byte[chunkSize + carry.length];
+        System.arraycopy(carry, 0, data, 0, carry.length);
+        int filled = carry.length;
+        carry = EMPTY;
+        while (true) {
+            int read = input.read(data, filled, data.length - filled);
+            if (read < 0) {
+                finished = true;
+                return filled == 0 ? null : createChunk(data, filled);
+            }
+            filled += read;
+            if (filled == data.length) {
+                int end = lastLineEnd(data, filled);
+                if (end > 0) {
+                    carry = Arrays.copyOfRange(data, end, filled);
+                    return createChunk(data, end);
+                }
+                // A single line is longer than the chunk, so keep reading until it ends
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * Skips the stream forward to the start offset
+     * @throws IOException If the stream could not be read
+     */
+    private void skipToStart() throws IOException {
+        while (offset < skipTo) {
+            long skipped = input.skip(skipTo - offset);
+            if (skipped <= 0) {
+                // skip may make no progress without being at the end, so fall back to read
+                if (input.read() < 0) {
+                    finished = true;
+                    return;
+                }
+                skipped = 1;
+            }
+            offset += skipped;
+        }
+    }
+
+    /**
+     * Creates a chunk from the first length bytes of the given data
+     * @param data The bytes read from the stream
+     * @param length The number of bytes belonging to the chunk
+     * @return A chunk wrapping the given bytes
+     */
+    private PricebookChunk createChunk(byte[] data, int length) {
+        offset += length;
+        return new PricebookChunk(ByteBuffer.wrap(data, 0, length), offset);
+    }
+
+    /**
+     * Finds the end of the last complete line in the given bytes
+     * @param data The bytes to search
+     * @param length The number of bytes to search
+     * @return The index after the last line terminator, 0 if there is none
+     */
+    static int lastLineEnd(byte[] data, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (data[i] == '\n' || data[i] == '\r') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.riley.inventoryapplication.Model;
+
+import java.util.Arrays;
+
+/**
+ * An in-memory record of every barcode in the product table, used to answer "is this barcode
+ * stored?" without going to the database when the answer is no. The barcodes loaded from the
+ * table are kept in a sorted long[], and barcodes added since are kept in a small open
+ * addressing hash set which is merged into the sorted array once it grows large enough, so
+ * nothing is boxed and the merges cost a constant amount per barcode on average
+ *
+ * Answers are one-sided. A barcode reported absent is certainly not stored, but a barcode
+ * reported present may have been deleted since, since deletions are not tracked. Until the
+ * table has been loaded every barcode is reported present
+ */
+final class BarcodeMembership {
+
+    /**
+     * Reads the barcodes of the product table in increasing order, one chunk at a time
+     */
+    interface ChunkReader {
+        /**
+         * Reads the smallest stored barcodes greater than the given one
+         * @param after The barcode the chunk starts after
+         * @param into The array to read into, from its start; its length is the most to read
+         * @return The number of barcodes read, fewer than the array holds only at the end of the table
+         */
+        int read(long after, long[] into);
+    }
+
+    private static final int MIN_PENDING_CAPACITY = 1024;
+    // Marks an empty slot in the hash set; never a GTIN
+    private static final long EMPTY = Gtin.INVALID;
+
+    // Representation invariant
+    //  sorted[0..size) is strictly increasing
+    //  pending.length is a power of two, and pendingCount < pending.length / 2
+    //  loaded, or every barcode is reported present
+
+    private long[] sorted = new long[0];
+    private int size;
+    private long[] pending = newTable(MIN_PENDING_CAPACITY);
+    private int pendingCount;
+    private boolean loaded;
+    // Counts loads, so that a load overtaken by a newer one is dropped
+    private int loadGeneration;
+
+    /**
+     * Determines whether the given barcode might be stored
+     * @param barcode The GTIN to check
+     * @return False if the barcode is certainly not stored, true otherwise
+     */
+    synchronized boolean mightContain(long barcode) {
+        return !loaded || Arrays.binarySearch(sorted, 0, size, barcode) >= 0 || pendingContains(barcode);
+    }
+
+    /**
+     * Records a barcode that is about to be stored. Must be called before the barcode is
+     * written, so that no reader can see the product before this record does
+     * @param barcode The GTIN being stored
+     */
+    synchronized void add(long barcode) {
+        if (barcode == EMPTY || Arrays.binarySearch(sorted, 0, size, barcode) >= 0) {
+            return;
+        }
+        int mask = pending.length - 1;
+        int slot = hash(barcode) & mask;
+        while (pending[slot] != EMPTY) {
+            if (pending[slot] == barcode) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        pending[slot] = barcode;
+        pendingCount++;
+        if (pendingCount >= pending.length / 2) {
+            if (pendingCount >= Math.max(MIN_PENDING_CAPACITY / 2, size / 4)) {
+                mergePending();
+            } else {
+                pending = rehash(pending, pending.length * 2);
+            }
+        }
+    }
+
+    /**
+     * Forgets every barcode and starts a new load of the table. Barcodes added from now on
+     * are kept, so the load only needs the barcodes stored when it reads the table
+     * @return The generation to pass to finishLoading
+     */
+    synchronized int startLoading() {
+        sorted = new long[0];
+        size = 0;
+        pending = newTable(MIN_PENDING_CAPACITY);
+        pendingCount = 0;
+        loaded = false;
+        return ++loadGeneration;
+    }
+
+    /**
+     * Completes a load with the barcodes read from the table
+     * @param barcodes The barcodes of the table, in increasing order
+     * @param count The number of barcodes in the array
+     * @param generation The generation returned by startLoading
+     */
+    synchronized void finishLoading(long[] barcodes, int count, int generation) {
+        if (generation != loadGeneration) {
+            return;
+        }
+        long[] merged = merge(barcodes, count, sorted, size);
+        size = countMerged(barcodes, count, sorted, size);
+        sorted = merged;
+        loaded = true;
+        mergePending();
+    }
+
+    /**
+     * Loads the table a chunk at a time and completes the load. Each chunk is read by key,
+     * after the last barcode of the chunk before, rather than by position, so a write during
+     * the load can never push a stored barcode past the reader. A barcode inserted below the
+     * reader is missed, but it was added before it was written, so it is kept anyway
+     * @param reader Reads the barcodes of the table
+     * @param chunkSize The most barcodes read at a time
+     * @param generation The generation returned by startLoading
+     * @throws IllegalArgumentException reader == null || chunkSize < 1
+     */
+    void load(ChunkReader reader, int chunkSize, int generation) {
+        if (reader == null || chunkSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        long[] barcodes = new long[chunkSize];
+        long[] chunk = new long[chunkSize];
+        int count = 0;
+        // Every GTIN is greater
+        long after = Long.MIN_VALUE;
+        while (isCurrent(generation)) {
+            int read = reader.read(after, chunk);
+            if (count + read > barcodes.length) {
+                barcodes = Arrays.copyOf(barcodes, Math.max(count + read, barcodes.length * 2));
+            }
+            System.arraycopy(chunk, 0, barcodes, count, read);
+            count += read;
+            if (read < chunkSize) {
+                finishLoading(barcodes, count, generation);
+                return;
+            }
+            after = chunk[read - 1];
+        }
+    }
+
+    /**
+     * Determines whether the given load is still the latest
+     * @param generation The generation returned by startLoading
+     * @return False if a newer load has started since
+     */
+    private synchronized boolean isCurrent(int generation) {
+        return generation == loadGeneration;
+    }
+
+    /**
+     * Records that the table is now empty
+     */
+    synchronized void clear() {
+        startLoading();
+        loaded = true;
+    }
+
+    /**
+     * Return whether the table has been loaded, so that absent answers can be trusted
+     * @return True once loading has finished
+     */
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Determines whether the given barcode is in the hash set of barcodes added since the
+     * last merge
+     * @param barcode The GTIN to look for
+     * @return True if the barcode is pending
+     */
+    private boolean pendingContains(long barcode) {
+        int mask = pending.length - 1;
+        int slot = hash(barcode) & mask;
+        while (pending[slot] != EMPTY) {
+            if (pending[slot] == barcode) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Merges the pending barcodes into the sorted array and empties the hash set
+     */
+    private void mergePending() {
+        long[] added = new long[pendingCount];
+        int count = 0;
+        for (long barcode : pending) {
+            if (barcode != EMPTY) {
+                added[count++] = barcode;
+            }
+        }
+        Arrays.sort(added, 0, count);
+        long[] merged = merge(sorted, size, added, count);
+        size = countMerged(sorted, size, added, count);
+        sorted = merged;
+        pending = newTable(MIN_PENDING_CAPACITY);
+        pendingCount = 0;
+    }
+
+    /**
+     * Merges two increasing runs of barcodes into one, dropping duplicates
+     * @param first The first run
+     * @param firstCount The length of the first run
+     * @param second The second run
+     * @param secondCount The length of the second run
+     * @return An array starting with the merged run
+     */
+    private static long[] merge(long[] first, int firstCount, long[] second, int secondCount) {
+        long[] merged = new long[firstCount + secondCount];
+        int i = 0, j = 0, k = 0;
+        while (i < firstCount || j < secondCount) {
+            long next;
+            if (j == secondCount || (i < firstCount && first[i] <= second[j])) {
+                next = first[i++];
+            } else {
+                next = second[j++];
+            }
+            if (k == 0 || merged[k - 1] != next) {
+                merged[k++] = next;
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Counts the distinct barcodes in two increasing runs
+     * @param first The first run
+     * @param firstCount The length of the first run
+     * @param second The second run
+     * @param secondCount The length of the second run
+     * @return The length of the run merge would produce
+     */
+    private static int countMerged(long[] first, int firstCount, long[] second, int secondCount) {
+        int i = 0, j = 0, count = 0;
+        while (i < firstCount && j < secondCount) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+            count++;
+        }
+        return count + (firstCount - i) + (secondCount - j);
+    }
+
+    /**
+     * Copies the barcodes of a hash set into a new one of the given capacity
+     * @param table The hash set to copy
+     * @param capacity The capacity of the new set, a power of two
+     * @return The new hash set
+     */
+    private static long[] rehash(long[] table, int capacity) {
+        long[] grown = newTable(capacity);
+        int mask = capacity - 1;
+        for (long barcode : table) {
+            if (barcode != EMPTY) {
+                int slot = hash(barcode) & mask;
+                while (grown[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                grown[slot] = barcode;
+            }
+        }
+        return grown;
+    }
+
+    /**
+     * Creates an empty hash set
+     * @param capacity The number of slots, a power of two
+     * @return The empty set
+     */
+    private static long[] newTable(int capacity) {
+        long[] table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    /**
+     * Spreads the bits of a barcode, whose low digits are far from uniform
+     * @param barcode The GTIN to hash
+     * @return The hash of the barcode
+     */
+    private static int hash(long barcode) {
+        long mixed = barcode * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
@@ -0,0 +1,342 @@
+package com.example.riley.inventoryapplication.Model;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A product store which remembers the most recently looked up barcodes of another store, so
+ * that scanning the same products again and again does not go back to the database. Both
+ * products found and barcodes known to be missing are remembered, up to a fixed number of
+ * barcodes, and the least recently used barcode is forgotten to make room for a new one
+ *
+ * Every write through this store forgets the barcodes it touches, including writes made by
+ * its pricebook writers, so all writes must go through it for lookups to stay current
+ *
+ * @specfield DEFAULT_CAPACITY The number of barcodes remembered by default
+ */
+public class CachingProductStore implements ProductStore {
+    public static final int DEFAULT_CAPACITY = 4096;
+    // Stands in for a barcode known not to be stored
+    private static final ProductProfile ABSENT = new ProductProfile(Gtin.INVALID, "", "");
+
+    // Representation invariant
+    //  cache.size() <= capacity
+    //  every entry of cache maps a barcode to its product in store, or to ABSENT if store has none
+
+    private final ProductStore store;
+    private final int capacity;
+    private final LinkedHashMap<Long, ProductProfile> cache;
+    // Bumped by every write, so a lookup which raced with a write does not cache what it read
+    private long version;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructor for a caching store
+     * @param store The store whose lookups are cached
+     * @param capacity The largest number of barcodes remembered
+     * @throws IllegalArgumentException store == null || capacity < 1
+     */
+    public CachingProductStore(ProductStore store, final int capacity) {
+        if (store == null || capacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.store = store;
+        this.capacity = capacity;
+        // Access order, so the eldest entry is the least recently used
+        cache = new LinkedHashMap<Long, ProductProfile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ProductProfile> eldest) {
+                if (size() > CachingProductStore.this.capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public ProductProfile findByBarcode(long barcode) {
+        long versionRead;
+        synchronized (this) {
+            ProductProfile cached = cache.get(barcode);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached == ABSENT ? null : cached;
+            }
+            versionRead = version;
+        }
+        misses.incrementAndGet();
+        ProductProfile found = store.findByBarcode(barcode);
+        synchronized (this) {
+            if (version == versionRead) {
+                cache.put(barcode, found == null ? ABSENT : found);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public boolean contains(ProductProfile profile) {
+        return findByBarcode(profile.getBarcode()) != null;
+    }
+
+    @Override
+    public void insertRecord(ProductProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException();
+        }
+        try {
+            store.insertRecord(profile);
+        } finally {
+            forget(profile.getBarcode());
+        }
+    }
+
+    @Override
+    public void upsertRecord(ProductProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException();
+        }
+        try {
+            store.upsertRecord(profile);
+        } finally {
+            forget(profile.getBarcode());
+        }
+    }
+
+    @Override
+    public long insertAll(Iterable<ProductProfile> profiles) {
+        try {
+            return store.insertAll(profiles);
+        } finally {
+            forgetAll();
+        }
+    }
+
+    @Override
+    public void updateRecord(ProductProfile profile) {
+        try {
+            store.updateRecord(profile);
+        } finally {
+            forget(profile.getBarcode());
+        }
+    }
+
+    @Override
+    public void deleteRecord(ProductProfile profile) {
+        try {
+            store.deleteRecord(profile);
+        } finally {
+            forget(profile.getBarcode());
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        try {
+            store.deleteAll();
+        } finally {
+            forgetAll();
+        }
+    }
+
+    @Override
+    public List<ProductProfile> searchByRelevance(String query, int limit) {
+        return store.searchByRelevance(query, limit);
+    }
+
+    @Override
+    public ProductPage searchPage(String query, ProductPage.Key after, int pageSize) {
+        return store.searchPage(query, after, pageSize);
+    }
+
+    @Override
+    public int countMatches(String query) {
+        return store.countMatches(query);
+    }
+
+    @Override
+    public void addCounts(Map<Long, Integer> counts) {
+        store.addCounts(counts);
+    }
+
+    @Override
+    public long findCount(long barcode) {
+        return store.findCount(barcode);
+    }
+
+    @Override
+    public ImportCheckpoint findCheckpoint(String source) {
+        return store.findCheckpoint(source);
+    }
+
+    @Override
+    public PricebookWriter newDeltaWriter(int chunkSize, ImportCheckpoint start) {
+        return new ForgettingWriter(store.newDeltaWriter(chunkSize, start), chunkSize);
+    }
+
+    /**
+     * Return the number of lookups answered from the cache
+     * @return The number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Return the number of lookups that had to go to the underlying store
+     * @return The number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Return the number of barcodes forgotten to make room for others
+     * @return The number of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Return the number of barcodes currently remembered
+     * @return The size of the cache
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Forgets what is known about the given barcode
+     * @param barcode The GTIN that was written
+     */
+    private synchronized void forget(long barcode) {
+        version++;
+        cache.remove(barcode);
+    }
+
+    /**
+     * Forgets every barcode
+     */
+    private synchronized void forgetAll() {
+        version++;
+        cache.clear();
+    }
+
+    /**
+     * A pricebook writer of the underlying store which forgets each barcode it applies, and
+     * every barcode once stale products are removed. A lookup made while a chunk is being
+     * applied may still read the product as it was before the chunk, so the barcodes of each
+     * chunk are forgotten again once it has been committed
+     */
+    private class ForgettingWriter implements PricebookWriter {
+        private final PricebookWriter writer;
+        // The barcodes applied since the last commit, which the writer makes every chunkSize lines
+        private final long[] uncommitted;
+        private int pending;
+
+        /**
+         * Constructor for a forgetting writer
+         * @param writer The writer of the underlying store
+         * @param chunkSize The number of lines the writer applies per commit
+         */
+        ForgettingWriter(PricebookWriter writer, int chunkSize) {
+            this.writer = writer;
+            this.uncommitted = new long[chunkSize];
+        }
+
+        @Override
+        public void apply(ProductProfile profile, long fingerprint) {
+            if (profile == null) {
+                throw new IllegalArgumentException();
+            }
+            try {
+                writer.apply(profile, fingerprint);
+            } catch (RuntimeException e) {
+                // The writer rolled back its chunk and starts counting lines afresh
+                forget(profile.getBarcode());
+                forgetCommitted();
+                throw e;
+            }
+            forget(profile.getBarcode());
+            uncommitted[pending++] = profile.getBarcode();
+            if (pending == uncommitted.length) {
+                forgetCommitted();
+            }
+        }
+
+        @Override
+        public void markApplied(long offset) {
+            writer.markApplied(offset);
+        }
+
+        @Override
+        public void flush() {
+            try {
+                writer.flush();
+            } finally {
+                forgetCommitted();
+            }
+        }
+
+        @Override
+        public long removeStale() {
+            try {
+                return writer.removeStale();
+            } finally {
+                pending = 0;
+                forgetAll();
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                writer.close();
+            } finally {
+                forgetCommitted();
+            }
+        }
+
+        /**
+         * Forgets the barcodes applied since the last commit, now that they are committed
+         */
+        private void forgetCommitted() {
+            for (int i = 0; i < pending; i++) {
+                forget(uncommitted[i]);
+            }
+            pending = 0;
+        }
+
+        @Override
+        public long getInserted() {
+            return writer.getInserted();
+        }
+
+        @Override
+        public long getUpdated() {
+            return writer.getUpdated();
+        }
+
+        @Override
+        public long getUnchanged() {
+            return writer.getUnchanged();
+        }
+
+        @Override
+        public long getDuplicated() {
+            return writer.getDuplicated();
+        }
+
+        @Override
+        public long getDeleted() {
+            return writer.getDeleted();
+        }
+    }
+}
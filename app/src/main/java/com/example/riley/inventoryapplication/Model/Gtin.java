@@ -0,0 +1,172 @@
+package com.example.riley.inventoryapplication.Model;
+
+/**
+ * Static utilities for barcodes held as GTIN-14 numbers in a long. UPC-A, EAN-13, EAN-8 and
+ * UPC-E barcodes all normalize to the GTIN-14 of the same product, whose numeric value is
+ * simply the barcode with leading zeros dropped, so the scanner and the importer agree on
+ * one integer key per product. None of the methods allocate apart from toString
+ *
+ * @specfield INVALID The value returned for anything that is not a valid barcode
+ */
+public final class Gtin {
+    public static final long INVALID = -1;
+    private static final int MAX_DIGITS = 14;
+    private static final int MAX_BODY_DIGITS = 11;
+    private static final long UPC_A_LIMIT = 1000000000000L;
+    private static final long EAN_13_LIMIT = 10000000000000L;
+    private static final long GTIN_14_LIMIT = 100000000000000L;
+
+    private Gtin() {
+    }
+
+    /**
+     * Parses a barcode printed with its check digit: GTIN-8/EAN-8, UPC-A, EAN-13 or
+     * GTIN-14. A UPC-E barcode must be given to parseUpcE instead, since it has as many
+     * digits as an EAN-8
+     * @param digits The digits of the barcode, including any leading zeros
+     * @return The GTIN of the barcode, INVALID if it is not a barcode or its check digit is wrong
+     */
+    public static long parse(CharSequence digits) {
+        int length = digits == null ? 0 : digits.length();
+        if (length != 8 && length != 12 && length != 13 && length != MAX_DIGITS) {
+            return INVALID;
+        }
+        long value = readDigits(digits, 0, length);
+        return isValid(value) ? value : INVALID;
+    }
+
+    /**
+     * Parses a UPC-E barcode and expands it to the UPC-A barcode it stands for. Accepts the
+     * six compressed digits alone, with the number system digit in front, or with the number
+     * system and check digits around them
+     * @param digits The digits of the barcode
+     * @return The GTIN of the barcode, INVALID if it is not a UPC-E barcode or its check
+     *         digit is wrong
+     */
+    public static long parseUpcE(CharSequence digits) {
+        int length = digits == null ? 0 : digits.length();
+        if (length < 6 || length > 8) {
+            return INVALID;
+        }
+        int start = length == 6 ? 0 : 1;
+        long numberSystem = length == 6 ? 0 : readDigits(digits, 0, 1);
+        long compressed = readDigits(digits, start, start + 6);
+        if (numberSystem < 0 || numberSystem > 1 || compressed < 0) {
+            return INVALID;
+        }
+        long body = numberSystem * 10000000000L + expandUpcE(compressed);
+        long gtin = body * 10 + checkDigit(body);
+        if (length == 8 && readDigits(digits, 7, 8) != gtin % 10) {
+            return INVALID;
+        }
+        return gtin;
+    }
+
+    /**
+     * Normalizes a barcode number taken from a pricebook. Numbers of up to 11 digits are the
+     * barcode without its check digit, which is computed and appended; longer numbers must
+     * already end in a correct check digit
+     * @param number The barcode number, without leading zeros
+     * @param digits The number of digits the barcode was written with, including leading zeros
+     * @return The GTIN of the barcode, INVALID if it cannot be a barcode
+     */
+    public static long fromPricebook(long number, int digits) {
+        if (number <= 0 || digits > MAX_DIGITS) {
+            return INVALID;
+        } else if (digits <= MAX_BODY_DIGITS) {
+            return number * 10 + checkDigit(number);
+        }
+        return isValid(number) ? number : INVALID;
+    }
+
+    /**
+     * Determines whether the given number is a GTIN with a correct check digit
+     * @param gtin The number to check
+     * @return True if the number is a valid GTIN, false otherwise
+     */
+    public static boolean isValid(long gtin) {
+        return gtin >= 10 && gtin < GTIN_14_LIMIT && checkDigit(gtin / 10) == gtin % 10;
+    }
+
+    /**
+     * Formats the given GTIN the way it is printed under the barcode: 12 digits for anything
+     * that fits a UPC-A, 13 for an EAN-13 and 14 otherwise
+     * @param gtin The GTIN to format
+     * @return The digits of the barcode, including leading zeros
+     */
+    public static String toString(long gtin) {
+        int length = gtin < UPC_A_LIMIT ? 12 : gtin < EAN_13_LIMIT ? 13 : MAX_DIGITS;
+        char[] digits = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + gtin % 10);
+            gtin /= 10;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Computes the check digit for the given barcode body. Working from the right, digits are
+     * weighted 3, 1, 3, ... so leading zeros make no difference
+     * @param body The barcode without its check digit
+     * @return The check digit for the body
+     */
+    static int checkDigit(long body) {
+        int sum = 0;
+        while (body > 0) {
+            sum += (body % 10) * 3;
+            body /= 10;
+            sum += body % 10;
+            body /= 10;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Expands the six compressed digits of a UPC-E barcode into the ten manufacturer and
+     * product digits of a UPC-A barcode. The last compressed digit says where the zeros go
+     * @param compressed The six compressed digits
+     * @return The ten digits between the number system and check digits of the UPC-A
+     */
+    private static long expandUpcE(long compressed) {
+        int d1 = (int) (compressed / 100000);
+        int d2 = (int) (compressed / 10000 % 10);
+        int d3 = (int) (compressed / 1000 % 10);
+        int d4 = (int) (compressed / 100 % 10);
+        int d5 = (int) (compressed / 10 % 10);
+        int d6 = (int) (compressed % 10);
+        long manufacturer, product;
+        if (d6 <= 2) {
+            manufacturer = d1 * 10000 + d2 * 1000 + d6 * 100;
+            product = d3 * 100 + d4 * 10 + d5;
+        } else if (d6 == 3) {
+            manufacturer = d1 * 10000 + d2 * 1000 + d3 * 100;
+            product = d4 * 10 + d5;
+        } else if (d6 == 4) {
+            manufacturer = d1 * 10000 + d2 * 1000 + d3 * 100 + d4 * 10;
+            product = d5;
+        } else {
+            manufacturer = d1 * 10000 + d2 * 1000 + d3 * 100 + d4 * 10 + d5;
+            product = d6;
+        }
+        return manufacturer * 100000 + product;
+    }
+
+    /**
+     * Reads the decimal digits between the given indices
+     * @param digits The characters to read
+     * @param start The index of the first digit
+     * @param end The index after the last digit
+     * @return The value of the digits, -1 if any character is not a digit
+     */
+    private static long readDigits(CharSequence digits, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.riley.inventoryapplication.Model;
+
+import java.io.File;
+
+/**
+ * The committed progress of a pricebook import. A checkpoint is written in the same
+ * transaction as the products it covers, so after a crash the import can continue from
+ * the checkpoint without losing or repeating any committed work
+ */
+public class ImportCheckpoint {
+    // Representation invariant
+    //  source != null
+    //  offset >= 0
+    //  generation >= 0, where 0 means no generation has been started yet
+
+    private final String source;
+    private final long sourceLength, sourceModified, offset, generation;
+
+    /**
+     * Constructor for an import checkpoint
+     * @param source The path of the pricebook being imported
+     * @param sourceLength The length of the pricebook when the import started
+     * @param sourceModified The last modified time of the pricebook when the import started
+     * @param offset The offset in the pricebook up to which every line has been committed
+     * @param generation The generation of the import, 0 if it has not been started
+     */
+    public ImportCheckpoint(String source, long sourceLength, long sourceModified, long offset, long generation) {
+        this.source = source;
+        this.sourceLength = sourceLength;
+        this.sourceModified = sourceModified;
+        this.offset = offset;
+        this.generation = generation;
+    }
+
+    /**
+     * Creates a checkpoint for an import of the given file which has not started yet
+     * @param pricebook The pricebook to be imported
+     * @return A checkpoint at the start of the given file
+     */
+    public static ImportCheckpoint start(File pricebook) {
+        return new ImportCheckpoint(pricebook.getAbsolutePath(), pricebook.length(), pricebook.lastModified(), 0, 0);
+    }
+
+    /**
+     * Determines whether this checkpoint was taken for the given file as it is now
+     * @param pricebook The file to be checked
+     * @return True if the file is the same and has not changed since the checkpoint was taken
+     */
+    public boolean matches(File pricebook) {
+        return source.equals(pricebook.getAbsolutePath()) && sourceLength == pricebook.length()
+                && sourceModified == pricebook.lastModified();
+    }
+
+    /**
+     * Return the path of the pricebook being imported
+     * @return The path of the pricebook
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Return the length of the pricebook when the import started
+     * @return The length of the pricebook
+     */
+    public long getSourceLength() {
+        return sourceLength;
+    }
+
+    /**
+     * Return the last modified time of the pricebook when the import started
+     * @return The last modified time of the pricebook
+     */
+    public long getSourceModified() {
+        return sourceModified;
+    }
+
+    /**
+     * Return the offset in the pricebook up to which every line has been committed
+     * @return The committed offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Return the generation of the import, 0 if it has not been started
+     * @return The generation of the import
+     */
+    public long getGeneration() {
+        return generation;
+    }
+}
@@ -0,0 +1,462 @@
+package com.example.riley.inventoryapplication.Model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A product store held entirely on the heap, for running the import, search and scan code
+ * on a plain JVM and comparing it against SQLiteHelper at scale. Products are kept in a hash
+ * index by barcode, a sorted index in the (brand, barcode) order pages are read in, and a
+ * sorted index of the words of each searched column for prefix matching. Searches match and
+ * rank products the same way as the full text index of the database
+ *
+ * Every method is synchronized, so the store may be shared between threads. Nothing is
+ * persisted, and pricebook writes take effect at once rather than in transactions
+ */
+public class InMemoryProductStore implements ProductStore {
+    // Representation invariant
+    //  every product in byBarcode is in byBrand under its key, and each word of its brand
+    //   and name is in the word index of that column, and nothing else is in those indexes
+    //  no set in a word index is empty
+
+    private final Map<Long, ProductProfile> byBarcode = new HashMap<>();
+    private final TreeMap<ProductPage.Key, ProductProfile> byBrand = new TreeMap<>(ProductPage.Key.BRAND_ORDER);
+    private final List<TreeMap<String, Set<Long>>> wordIndexes = new ArrayList<>();
+    // The fingerprint and generation of every imported product, by barcode
+    private final Map<Long, long[]> fingerprints = new HashMap<>();
+    private final Map<String, ImportCheckpoint> checkpoints = new HashMap<>();
+    private final Map<Long, Long> inventoryCounts = new HashMap<>();
+
+    /**
+     * Constructor for an empty store
+     */
+    public InMemoryProductStore() {
+        wordIndexes.add(new TreeMap<String, Set<Long>>());
+        wordIndexes.add(new TreeMap<String, Set<Long>>());
+    }
+
+    @Override
+    public synchronized void insertRecord(ProductProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException();
+        }
+        if (!byBarcode.containsKey(profile.getBarcode())) {
+            add(profile);
+        }
+    }
+
+    @Override
+    public synchronized void upsertRecord(ProductProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException();
+        }
+        remove(profile.getBarcode());
+        add(profile);
+    }
+
+    @Override
+    public synchronized long insertAll(Iterable<ProductProfile> profiles) {
+        if (profiles == null) {
+            throw new IllegalArgumentException();
+        }
+        long inserted = 0;
+        for (ProductProfile profile : profiles) {
+            if (profile == null) {
+                throw new IllegalArgumentException();
+            }
+            if (!byBarcode.containsKey(profile.getBarcode())) {
+                add(profile);
+                inserted++;
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public synchronized void updateRecord(ProductProfile profile) {
+        if (remove(profile.getBarcode()) != null) {
+            add(profile);
+        }
+    }
+
+    @Override
+    public synchronized void deleteRecord(ProductProfile profile) {
+        remove(profile.getBarcode());
+        fingerprints.remove(profile.getBarcode());
+    }
+
+    @Override
+    public synchronized void deleteAll() {
+        byBarcode.clear();
+        byBrand.clear();
+        for (TreeMap<String, Set<Long>> wordIndex : wordIndexes) {
+            wordIndex.clear();
+        }
+        fingerprints.clear();
+        checkpoints.clear();
+    }
+
+    @Override
+    public synchronized void addCounts(Map<Long, Integer> counts) {
+        if (counts == null) {
+            throw new IllegalArgumentException();
+        }
+        for (Integer count : counts.values()) {
+            if (count == null || count < 0) {
+                throw new IllegalArgumentException();
+            }
+        }
+        for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+            inventoryCounts.put(entry.getKey(), findCount(entry.getKey()) + entry.getValue());
+        }
+    }
+
+    @Override
+    public synchronized long findCount(long barcode) {
+        Long count = inventoryCounts.get(barcode);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public synchronized ProductProfile findByBarcode(long barcode) {
+        return byBarcode.get(barcode);
+    }
+
+    @Override
+    public synchronized boolean contains(ProductProfile profile) {
+        return byBarcode.containsKey(profile.getBarcode());
+    }
+
+    @Override
+    public synchronized List<ProductProfile> searchByRelevance(String query, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException();
+        }
+        List<ProductProfile> products = new ArrayList<>();
+        List<String> words = ProductSearchQuery.words(query);
+        if (words.isEmpty()) {
+            return products;
+        }
+        // The rows matching each word in each column, for the rarity of the word
+        List<List<Set<Long>>> hits = new ArrayList<>();
+        for (String word : words) {
+            List<Set<Long>> hitsByColumn = new ArrayList<>();
+            for (int column = 0; column < wordIndexes.size(); column++) {
+                hitsByColumn.add(prefixMatches(column, word));
+            }
+            hits.add(hitsByColumn);
+        }
+        PriorityQueue<ProductSearchQuery.RankedMatch> best = new PriorityQueue<>();
+        for (long barcode : matches(words)) {
+            ProductProfile profile = byBarcode.get(barcode);
+            double score = 0;
+            for (int i = 0; i < words.size(); i++) {
+                for (int column = 0; column < wordIndexes.size(); column++) {
+                    long hitsInRow = countPrefixes(words.get(i), column == ProductSearchQuery.BRAND_COLUMN
+                            ? profile.getBrandName() : profile.getProductName());
+                    score += ProductSearchQuery.score(column, hitsInRow, byBarcode.size(), hits.get(i).get(column).size());
+                }
+            }
+            ProductSearchQuery.offer(best, limit, barcode, score);
+        }
+        for (ProductSearchQuery.RankedMatch match : ProductSearchQuery.mostRelevantFirst(best)) {
+            products.add(byBarcode.get(match.barcode));
+        }
+        return products;
+    }
+
+    @Override
+    public synchronized ProductPage searchPage(String query, ProductPage.Key after, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        List<ProductProfile> products = new ArrayList<>();
+        List<String> words = ProductSearchQuery.words(query);
+        if (words.isEmpty()) {
+            return new ProductPage(products, null);
+        }
+        // Walk the products in page order from the key, so a page only reads as far as its last match
+        Map<ProductPage.Key, ProductProfile> rest = after == null ? byBrand : byBrand.tailMap(after, false);
+        for (ProductProfile profile : rest.values()) {
+            if (ProductSearchQuery.matches(words, profile)) {
+                if (products.size() == pageSize) {
+                    return new ProductPage(products, ProductPage.Key.of(products.get(pageSize - 1)));
+                }
+                products.add(profile);
+            }
+        }
+        return new ProductPage(products, null);
+    }
+
+    @Override
+    public synchronized int countMatches(String query) {
+        return matches(ProductSearchQuery.words(query)).size();
+    }
+
+    @Override
+    public synchronized ImportCheckpoint findCheckpoint(String source) {
+        return checkpoints.get(source);
+    }
+
+    @Override
+    public synchronized PricebookWriter newDeltaWriter(int chunkSize, ImportCheckpoint start) {
+        if (chunkSize < 1 || start == null) {
+            throw new IllegalArgumentException();
+        }
+        long generation = start.getGeneration();
+        if (generation == 0) {
+            for (long[] fingerprint : fingerprints.values()) {
+                generation = Math.max(generation, fingerprint[1]);
+            }
+            generation++;
+        }
+        return new DeltaWriter(start, generation);
+    }
+
+    /**
+     * Adds the given product to every index
+     * @requires no product with the same barcode is stored
+     * @param profile The product to add
+     */
+    private void add(ProductProfile profile) {
+        byBarcode.put(profile.getBarcode(), profile);
+        byBrand.put(ProductPage.Key.of(profile), profile);
+        indexWords(ProductSearchQuery.BRAND_COLUMN, profile.getBrandName(), profile.getBarcode());
+        indexWords(ProductSearchQuery.PRODUCT_COLUMN, profile.getProductName(), profile.getBarcode());
+    }
+
+    /**
+     * Removes the product with the given barcode from every index
+     * @param barcode The GTIN of the product
+     * @return The product removed, null if there was none
+     */
+    private ProductProfile remove(long barcode) {
+        ProductProfile old = byBarcode.remove(barcode);
+        if (old != null) {
+            byBrand.remove(ProductPage.Key.of(old));
+            unindexWords(ProductSearchQuery.BRAND_COLUMN, old.getBrandName(), barcode);
+            unindexWords(ProductSearchQuery.PRODUCT_COLUMN, old.getProductName(), barcode);
+        }
+        return old;
+    }
+
+    /**
+     * Adds the words of the given text to the word index of a column
+     * @param column The index of the column
+     * @param text The text of the column, may be null
+     * @param barcode The GTIN of the product the text belongs to
+     */
+    private void indexWords(int column, String text, long barcode) {
+        TreeMap<String, Set<Long>> wordIndex = wordIndexes.get(column);
+        for (String word : ProductSearchQuery.words(text)) {
+            Set<Long> barcodes = wordIndex.get(word);
+            if (barcodes == null) {
+                barcodes = new HashSet<>();
+                wordIndex.put(word, barcodes);
+            }
+            barcodes.add(barcode);
+        }
+    }
+
+    /**
+     * Removes the words of the given text from the word index of a column
+     * @param column The index of the column
+     * @param text The text of the column, may be null
+     * @param barcode The GTIN of the product the text belongs to
+     */
+    private void unindexWords(int column, String text, long barcode) {
+        TreeMap<String, Set<Long>> wordIndex = wordIndexes.get(column);
+        for (String word : ProductSearchQuery.words(text)) {
+            Set<Long> barcodes = wordIndex.get(word);
+            if (barcodes != null && barcodes.remove(barcode) && barcodes.isEmpty()) {
+                wordIndex.remove(word);
+            }
+        }
+    }
+
+    /**
+     * Finds the products with a word starting with every one of the given words, in either
+     * column
+     * @param words The words of the query
+     * @return The barcodes of the matching products, empty if there are no words
+     */
+    private Set<Long> matches(List<String> words) {
+        Set<Long> matches = null;
+        for (String word : words) {
+            Set<Long> wordMatches = new HashSet<>();
+            for (int column = 0; column < wordIndexes.size(); column++) {
+                wordMatches.addAll(prefixMatches(column, word));
+            }
+            if (matches == null) {
+                matches = wordMatches;
+            } else {
+                matches.retainAll(wordMatches);
+            }
+        }
+        return matches == null ? new HashSet<Long>() : matches;
+    }
+
+    /**
+     * Finds the products with a word in the given column starting with the given prefix
+     * @param column The index of the column
+     * @param prefix The start of a word
+     * @return The barcodes of the matching products
+     */
+    private Set<Long> prefixMatches(int column, String prefix) {
+        Set<Long> matches = new HashSet<>();
+        Iterator<Map.Entry<String, Set<Long>>> words = wordIndexes.get(column).tailMap(prefix, true)
+                .entrySet().iterator();
+        while (words.hasNext()) {
+            Map.Entry<String, Set<Long>> word = words.next();
+            if (!word.getKey().startsWith(prefix)) {
+                break;
+            }
+            matches.addAll(word.getValue());
+        }
+        return matches;
+    }
+
+    /**
+     * Counts the words of the given text starting with the given prefix
+     * @param prefix The start of a word
+     * @param text The text to search, may be null
+     * @return The number of matching words
+     */
+    private static long countPrefixes(String prefix, String text) {
+        long count = 0;
+        for (String word : ProductSearchQuery.words(text)) {
+            if (word.startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Applies a pricebook to this store as a delta against the previous import, with the
+     * same rules as the database: fingerprints stamped with the generation of the import
+     * that last saw them, and stale products removed at the end
+     */
+    private class DeltaWriter implements PricebookWriter {
+        private final ImportCheckpoint start;
+        private final long generation;
+        private long appliedOffset, committedOffset;
+        private long inserted, updated, unchanged, duplicated, deleted;
+
+        /**
+         * Constructor for a delta writer
+         * @param start The checkpoint the import starts from
+         * @param generation The generation of the import
+         */
+        DeltaWriter(ImportCheckpoint start, long generation) {
+            this.start = start;
+            this.generation = generation;
+            appliedOffset = start.getOffset();
+            committedOffset = start.getOffset();
+        }
+
+        @Override
+        public void apply(ProductProfile profile, long fingerprint) {
+            if (profile == null) {
+                throw new IllegalArgumentException();
+            }
+            synchronized (InMemoryProductStore.this) {
+                long barcode = profile.getBarcode();
+                long[] stored = fingerprints.get(barcode);
+                if (stored == null) {
+                    if (remove(barcode) == null) {
+                        inserted++;
+                    } else {
+                        // Entered by hand, so the pricebook takes the product over
+                        updated++;
+                    }
+                    add(profile);
+                    fingerprints.put(barcode, new long[]{fingerprint, generation});
+                } else if (stored[1] == generation) {
+                    duplicated++;
+                } else if (stored[0] == fingerprint) {
+                    stored[1] = generation;
+                    unchanged++;
+                } else {
+                    remove(barcode);
+                    add(profile);
+                    fingerprints.put(barcode, new long[]{fingerprint, generation});
+                    updated++;
+                }
+            }
+        }
+
+        @Override
+        public void markApplied(long offset) {
+            appliedOffset = offset;
+        }
+
+        @Override
+        public void flush() {
+            if (appliedOffset == committedOffset) {
+                return;
+            }
+            synchronized (InMemoryProductStore.this) {
+                checkpoints.put(start.getSource(), new ImportCheckpoint(start.getSource(), start.getSourceLength(),
+                        start.getSourceModified(), appliedOffset, generation));
+            }
+            committedOffset = appliedOffset;
+        }
+
+        @Override
+        public long removeStale() {
+            flush();
+            synchronized (InMemoryProductStore.this) {
+                Iterator<Map.Entry<Long, long[]>> stored = fingerprints.entrySet().iterator();
+                while (stored.hasNext()) {
+                    Map.Entry<Long, long[]> fingerprint = stored.next();
+                    if (fingerprint.getValue()[1] < generation) {
+                        if (remove(fingerprint.getKey()) != null) {
+                            deleted++;
+                        }
+                        stored.remove();
+                    }
+                }
+                checkpoints.remove(start.getSource());
+            }
+            return deleted;
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+
+        @Override
+        public long getInserted() {
+            return inserted;
+        }
+
+        @Override
+        public long getUpdated() {
+            return updated;
+        }
+
+        @Override
+        public long getUnchanged() {
+            return unchanged;
+        }
+
+        @Override
+        public long getDuplicated() {
+            return duplicated;
+        }
+
+        @Override
+        public long getDeleted() {
+            return deleted;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.riley.inventoryapplication.Model;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A product store which tells its listeners about every write made through it. Writes to a
+ * single product are reported with the product's barcode once the write has returned, so a
+ * listener looking the product up sees the new state. Imports are reported once, when their
+ * writer is closed, rather than line by line
+ *
+ * Listeners are called on the thread that made the write
+ */
+public class NotifyingProductStore implements ProductStore {
+    private final ProductStore store;
+    private final List<ProductStoreListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor for a notifying store
+     * @param store The store whose writes are reported
+     * @throws IllegalArgumentException store == null
+     */
+    public NotifyingProductStore(ProductStore store) {
+        if (store == null) {
+            throw new IllegalArgumentException();
+        }
+        this.store = store;
+    }
+
+    /**
+     * Adds a listener to be told of every later write
+     * @param listener The listener to add
+     * @throws IllegalArgumentException listener == null
+     */
+    public void addListener(ProductStoreListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException();
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added earlier
+     * @param listener The listener to remove
+     */
+    public void removeListener(ProductStoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void insertRecord(ProductProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException();
+        }
+        boolean existed = store.findByBarcode(profile.getBarcode()) != null;
+        store.insertRecord(profile);
+        if (!existed) {
+            fireChanged(new ProductChange(ProductChange.Kind.INSERTED, profile.getBarcode(), profile));
+        }
+    }
+
+    @Override
+    public void upsertRecord(ProductProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException();
+        }
+        boolean existed = store.findByBarcode(profile.getBarcode()) != null;
+        store.upsertRecord(profile);
+        fireChanged(new ProductChange(existed ? ProductChange.Kind.UPDATED : ProductChange.Kind.INSERTED,
+                profile.getBarcode(), profile));
+    }
+
+    @Override
+    public long insertAll(Iterable<ProductProfile> profiles) {
+        long inserted = store.insertAll(profiles);
+        if (inserted > 0) {
+            fireReplaced();
+        }
+        return inserted;
+    }
+
+    @Override
+    public void updateRecord(ProductProfile profile) {
+        store.updateRecord(profile);
+        fireChanged(new ProductChange(ProductChange.Kind.UPDATED, profile.getBarcode(), profile));
+    }
+
+    @Override
+    public void deleteRecord(ProductProfile profile) {
+        store.deleteRecord(profile);
+        fireChanged(new ProductChange(ProductChange.Kind.DELETED, profile.getBarcode(), null));
+    }
+
+    @Override
+    public void deleteAll() {
+        store.deleteAll();
+        fireReplaced();
+    }
+
+    @Override
+    public ProductProfile findByBarcode(long barcode) {
+        return store.findByBarcode(barcode);
+    }
+
+    @Override
+    public boolean contains(ProductProfile profile) {
+        return store.contains(profile);
+    }
+
+    @Override
+    public List<ProductProfile> searchByRelevance(String query, int limit) {
+        return store.searchByRelevance(query, limit);
+    }
+
+    @Override
+    public ProductPage searchPage(String query, ProductPage.Key after, int pageSize) {
+        return store.searchPage(query, after, pageSize);
+    }
+
+    @Override
+    public int countMatches(String query) {
+        return store.countMatches(query);
+    }
+
+    @Override
+    public void addCounts(Map<Long, Integer> counts) {
+        // Counts are no part of any product, so no product shown has changed
+        store.addCounts(counts);
+    }
+
+    @Override
+    public long findCount(long barcode) {
+        return store.findCount(barcode);
+    }
+
+    @Override
+    public ImportCheckpoint findCheckpoint(String source) {
+        return store.findCheckpoint(source);
+    }
+
+    @Override
+    public PricebookWriter newDeltaWriter(int chunkSize, ImportCheckpoint start) {
+        return new NotifyingWriter(store.newDeltaWriter(chunkSize, start));
+    }
+
+    /**
+     * Tells every listener of a change to one product
+     * @param change The change to report
+     */
+    private void fireChanged(ProductChange change) {
+        for (ProductStoreListener listener : listeners) {
+            listener.onProductChanged(change);
+        }
+    }
+
+    /**
+     * Tells every listener that any product may have changed
+     */
+    private void fireReplaced() {
+        for (ProductStoreListener listener : listeners) {
+            listener.onProductsReplaced();
+        }
+    }
+
+    /**
+     * A pricebook writer of the underlying store which reports the import once it is closed,
+     * if it wrote anything
+     */
+    private class NotifyingWriter implements PricebookWriter {
+        private final PricebookWriter writer;
+
+        /**
+         * Constructor for a notifying writer
+         * @param writer The writer of the underlying store
+         */
+        NotifyingWriter(PricebookWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void apply(ProductProfile profile, long fingerprint) {
+            writer.apply(profile, fingerprint);
+        }
+
+        @Override
+        public void markApplied(long offset) {
+            writer.markApplied(offset);
+        }
+
+        @Override
+        public void flush() {
+            writer.flush();
+        }
+
+        @Override
+        public long removeStale() {
+            return writer.removeStale();
+        }
+
+        @Override
+        public void close() {
+            try {
+                writer.close();
+            } finally {
+                // Whatever was committed before a failure is still worth showing
+                if (getInserted() + getUpdated() + getDeleted() > 0) {
+                    fireReplaced();
+                }
+            }
+        }
+
+        @Override
+        public long getInserted() {
+            return writer.getInserted();
+        }
+
+        @Override
+        public long getUpdated() {
+            return writer.getUpdated();
+        }
+
+        @Override
+        public long getUnchanged() {
+            return writer.getUnchanged();
+        }
+
+        @Override
+        public long getDuplicated() {
+            return writer.getDuplicated();
+        }
+
+        @Override
+        public long getDeleted() {
+            return writer.getDeleted();
+        }
+    }
+}
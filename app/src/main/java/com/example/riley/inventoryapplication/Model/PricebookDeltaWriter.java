@@ -0,0 +1,282 @@
+package com.example.riley.inventoryapplication.Model;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Applies a pricebook to the database as a delta against the previous import. A fingerprint
+ * of every imported line is kept per barcode, so only products whose line changed are
+ * written, and products which disappeared from the pricebook are removed once the import
+ * completes. Products entered by hand have no fingerprint and are never removed, until a
+ * pricebook lists them; the line then replaces the product's brand and name and gives it a
+ * fingerprint, so from then on it belongs to the pricebook like any other
+ *
+ * Every import is given a new generation. Fingerprints seen by the current import are
+ * stamped with it, and anything left with an older generation is stale. Each commit also
+ * stores a checkpoint of how far through the pricebook the import has got, so an
+ * interrupted import can continue in the same generation
+ *
+ * A line whose barcode the membership index knows is not stored cannot have a fingerprint
+ * either, so it is inserted without first looking up its fingerprint. On a first import,
+ * where nearly every line is new, this saves a query per line
+ *
+ * A writer must only be used from the thread that created it, since SQLite transactions
+ * belong to the thread that began them
+ */
+public class PricebookDeltaWriter implements PricebookWriter {
+    // Results of comparing a line with its stored fingerprint
+    private static final String SEEN = "seen";
+    private static final String UNCHANGED = "unchanged";
+
+    private static final String COMPARE = "SELECT (SELECT CASE WHEN " + SQLiteHelper.COLUMN_GENERATION + " = ? THEN '"
+            + SEEN + "' WHEN " + SQLiteHelper.COLUMN_FINGERPRINT + " = ? THEN '" + UNCHANGED + "' ELSE 'changed' END FROM "
+            + SQLiteHelper.FINGERPRINT_TABLE_NAME + " WHERE " + SQLiteHelper.COLUMN_CODE + " = ?)";
+    private static final String INSERT_IF_ABSENT = "INSERT OR IGNORE INTO " + SQLiteHelper.TABLE_NAME + " ("
+            + SQLiteHelper.COLUMN_CODE + ", " + SQLiteHelper.COLUMN_BRAND + ", " + SQLiteHelper.COLUMN_PRODUCT
+            + ") VALUES (?, ?, ?)";
+    private static final String UPDATE_PRODUCT = "UPDATE " + SQLiteHelper.TABLE_NAME + " SET "
+            + SQLiteHelper.COLUMN_BRAND + " = ?, " + SQLiteHelper.COLUMN_PRODUCT + " = ? WHERE "
+            + SQLiteHelper.COLUMN_CODE + " = ?";
+    private static final String WRITE_FINGERPRINT = "INSERT OR REPLACE INTO " + SQLiteHelper.FINGERPRINT_TABLE_NAME
+            + " (" + SQLiteHelper.COLUMN_CODE + ", " + SQLiteHelper.COLUMN_FINGERPRINT + ", "
+            + SQLiteHelper.COLUMN_GENERATION + ") VALUES (?, ?, ?)";
+    private static final String TOUCH_FINGERPRINT = "UPDATE " + SQLiteHelper.FINGERPRINT_TABLE_NAME + " SET "
+            + SQLiteHelper.COLUMN_GENERATION + " = ? WHERE " + SQLiteHelper.COLUMN_CODE + " = ?";
+    private static final String DELETE_STALE_PRODUCTS = "DELETE FROM " + SQLiteHelper.TABLE_NAME + " WHERE "
+            + SQLiteHelper.COLUMN_CODE + " IN (SELECT " + SQLiteHelper.COLUMN_CODE + " FROM "
+            + SQLiteHelper.FINGERPRINT_TABLE_NAME + " WHERE " + SQLiteHelper.COLUMN_GENERATION + " < ?)";
+    private static final String DELETE_STALE_FINGERPRINTS = "DELETE FROM " + SQLiteHelper.FINGERPRINT_TABLE_NAME
+            + " WHERE " + SQLiteHelper.COLUMN_GENERATION + " < ?";
+    private static final String WRITE_CHECKPOINT = "INSERT OR REPLACE INTO " + SQLiteHelper.CHECKPOINT_TABLE_NAME
+            + " (" + SQLiteHelper.COLUMN_SOURCE + ", " + SQLiteHelper.COLUMN_SOURCE_LENGTH + ", "
+            + SQLiteHelper.COLUMN_SOURCE_MODIFIED + ", " + SQLiteHelper.COLUMN_OFFSET + ", "
+            + SQLiteHelper.COLUMN_GENERATION + ") VALUES (?, ?, ?, ?, ?)";
+
+    private final SQLiteDatabase database;
+    private final BarcodeMembership membership;
+    private final SQLiteStatement compare, insertProduct, updateProduct, writeFingerprint, touchFingerprint,
+            writeCheckpoint;
+    private final ImportCheckpoint start;
+    private final int chunkSize;
+    private final long generation;
+    private int pending;
+    private long appliedOffset, committedOffset;
+    private long inserted, updated, unchanged, duplicated, deleted;
+
+    /**
+     * Constructor for a delta writer. Continues the generation of the given checkpoint, or
+     * starts a new generation if the checkpoint has none
+     * @param database The database to write to
+     * @param membership The barcodes stored in the database, kept up to date by this writer
+     * @param chunkSize The number of lines applied per transaction
+     * @param start The checkpoint the import starts from
+     * @throws IllegalArgumentException membership == null || chunkSize < 1 || start == null
+     */
+    PricebookDeltaWriter(SQLiteDatabase database, BarcodeMembership membership, int chunkSize, ImportCheckpoint start) {
+        if (membership == null || chunkSize < 1 || start == null) {
+            throw new IllegalArgumentException();
+        }
+        this.database = database;
+        this.membership = membership;
+        this.chunkSize = chunkSize;
+        this.start = start;
+        this.appliedOffset = start.getOffset();
+        this.committedOffset = start.getOffset();
+        if (start.getGeneration() > 0) {
+            this.generation = start.getGeneration();
+        } else {
+            this.generation = DatabaseUtils.longForQuery(database, "SELECT IFNULL(MAX(" + SQLiteHelper.COLUMN_GENERATION
+                    + "), 0) + 1 FROM " + SQLiteHelper.FINGERPRINT_TABLE_NAME, null);
+        }
+        writeCheckpoint = database.compileStatement(WRITE_CHECKPOINT);
+        compare = database.compileStatement(COMPARE);
+        insertProduct = database.compileStatement(INSERT_IF_ABSENT);
+        updateProduct = database.compileStatement(UPDATE_PRODUCT);
+        writeFingerprint = database.compileStatement(WRITE_FINGERPRINT);
+        touchFingerprint = database.compileStatement(TOUCH_FINGERPRINT);
+    }
+
+    @Override
+    public void apply(ProductProfile profile, long fingerprint) {
+        if (profile == null) {
+            throw new IllegalArgumentException();
+        }
+        if (pending == 0) {
+            database.beginTransaction();
+        }
+        try {
+            long barcode = profile.getBarcode();
+            String comparison = null;
+            if (membership.mightContain(barcode)) {
+                compare.bindLong(1, generation);
+                compare.bindLong(2, fingerprint);
+                compare.bindLong(3, barcode);
+                comparison = compare.simpleQueryForString();
+            }
+            if (comparison == null) {
+                membership.add(barcode);
+                bindProduct(insertProduct, profile);
+                if (insertProduct.executeInsert() != -1) {
+                    inserted++;
+                } else {
+                    // Entered by hand, so the pricebook takes the product over
+                    updateProduct(profile);
+                    updated++;
+                }
+                writeFingerprint(barcode, fingerprint);
+            } else if (comparison.equals(UNCHANGED)) {
+                touchFingerprint.bindLong(1, generation);
+                touchFingerprint.bindLong(2, barcode);
+                touchFingerprint.executeUpdateDelete();
+                unchanged++;
+            } else if (!comparison.equals(SEEN)) {
+                if (!updateProduct(profile)) {
+                    membership.add(barcode);
+                    bindProduct(insertProduct, profile);
+                    insertProduct.executeInsert();
+                }
+                writeFingerprint(barcode, fingerprint);
+                updated++;
+            } else {
+                duplicated++;
+            }
+        } catch (RuntimeException e) {
+            // Roll back the whole chunk rather than committing part of it later, along with
+            // the lines marked applied in it, so that no later flush checkpoints past them
+            database.endTransaction();
+            pending = 0;
+            appliedOffset = committedOffset;
+            throw e;
+        }
+        pending++;
+        if (pending == chunkSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void markApplied(long offset) {
+        appliedOffset = offset;
+    }
+
+    @Override
+    public void flush() {
+        if (pending == 0 && appliedOffset == committedOffset) {
+            return;
+        }
+        if (pending == 0) {
+            // Only the checkpoint has moved, over lines which held no products
+            database.beginTransaction();
+        }
+        try {
+            writeCheckpoint.bindString(1, start.getSource());
+            writeCheckpoint.bindLong(2, start.getSourceLength());
+            writeCheckpoint.bindLong(3, start.getSourceModified());
+            writeCheckpoint.bindLong(4, appliedOffset);
+            writeCheckpoint.bindLong(5, generation);
+            writeCheckpoint.executeInsert();
+            database.setTransactionSuccessful();
+            committedOffset = appliedOffset;
+        } finally {
+            database.endTransaction();
+            pending = 0;
+        }
+    }
+
+    @Override
+    public long removeStale() {
+        flush();
+        SQLiteStatement deleteProducts = database.compileStatement(DELETE_STALE_PRODUCTS);
+        SQLiteStatement deleteFingerprints = database.compileStatement(DELETE_STALE_FINGERPRINTS);
+        database.beginTransaction();
+        try {
+            deleteProducts.bindLong(1, generation);
+            deleted += deleteProducts.executeUpdateDelete();
+            deleteFingerprints.bindLong(1, generation);
+            deleteFingerprints.executeUpdateDelete();
+            database.delete(SQLiteHelper.CHECKPOINT_TABLE_NAME, SQLiteHelper.COLUMN_SOURCE + " = ?",
+                    new String[]{start.getSource()});
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            deleteProducts.close();
+            deleteFingerprints.close();
+        }
+        return deleted;
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            compare.close();
+            insertProduct.close();
+            updateProduct.close();
+            writeFingerprint.close();
+            touchFingerprint.close();
+            writeCheckpoint.close();
+        }
+    }
+
+    @Override
+    public long getInserted() {
+        return inserted;
+    }
+
+    @Override
+    public long getUpdated() {
+        return updated;
+    }
+
+    @Override
+    public long getUnchanged() {
+        return unchanged;
+    }
+
+    @Override
+    public long getDuplicated() {
+        return duplicated;
+    }
+
+    @Override
+    public long getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Binds the barcode, brand and name of the given product to the first three parameters
+     * @param statement The statement to bind to
+     * @param profile The product to be bound
+     */
+    private static void bindProduct(SQLiteStatement statement, ProductProfile profile) {
+        statement.bindLong(1, profile.getBarcode());
+        statement.bindString(2, profile.getBrandName());
+        statement.bindString(3, profile.getProductName());
+    }
+
+    /**
+     * Replaces the brand and name of the stored product with the barcode of the given one
+     * @param profile The new details of the product
+     * @return True if a product was updated
+     */
+    private boolean updateProduct(ProductProfile profile) {
+        updateProduct.bindString(1, profile.getBrandName());
+        updateProduct.bindString(2, profile.getProductName());
+        updateProduct.bindLong(3, profile.getBarcode());
+        return updateProduct.executeUpdateDelete() > 0;
+    }
+
+    /**
+     * Stores the fingerprint of the given barcode, stamped with the current generation
+     * @param barcode The GTIN whose line was applied
+     * @param fingerprint The fingerprint of the line
+     */
+    private void writeFingerprint(long barcode, long fingerprint) {
+        writeFingerprint.bindLong(1, barcode);
+        writeFingerprint.bindLong(2, fingerprint);
+        writeFingerprint.bindLong(3, generation);
+        writeFingerprint.executeInsert();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.riley.inventoryapplication.Model;
+
+/**
+ * Applies a pricebook to a product store as a delta against the previous import of it. Only
+ * products whose line changed are written, products missing from the pricebook are removed
+ * once it has been applied in full, and the progress of the import is committed along the
+ * way so that an interrupted import can continue from its last checkpoint
+ *
+ * A writer must only be used from the thread that created it
+ */
+public interface PricebookWriter {
+
+    /**
+     * Applies a single pricebook line. Only the first line for a barcode in an import is
+     * applied, so lines repeated after resuming from a checkpoint are skipped
+     * @param profile The product on the line
+     * @param fingerprint The fingerprint of the line
+     * @throws IllegalArgumentException profile == null
+     */
+    void apply(ProductProfile profile, long fingerprint);
+
+    /**
+     * Records that every line before the given offset in the pricebook has been applied. The
+     * offset is stored with the next commit
+     * @param offset The offset in the pricebook after the last applied line
+     */
+    void markApplied(long offset);
+
+    /**
+     * Commits the lines applied since the last commit, along with a checkpoint at the last
+     * offset marked as applied
+     */
+    void flush();
+
+    /**
+     * Removes every product that came from an earlier pricebook but was not in this one, and
+     * clears the checkpoint since the import is complete. Must only be called once the whole
+     * pricebook has been applied
+     * @return The number of products removed
+     */
+    long removeStale();
+
+    /**
+     * Commits any remaining lines and releases the writer
+     */
+    void close();
+
+    /**
+     * Return the number of barcodes imported for the first time
+     * @return The number of new barcodes
+     */
+    long getInserted();
+
+    /**
+     * Return the number of products rewritten because their line changed
+     * @return The number of changed products
+     */
+    long getUpdated();
+
+    /**
+     * Return the number of lines that matched the previous import
+     * @return The number of unchanged products
+     */
+    long getUnchanged();
+
+    /**
+     * Return the number of lines skipped because their barcode was already applied by
+     * this import
+     * @return The number of duplicate lines
+     */
+    long getDuplicated();
+
+    /**
+     * Return the number of products removed because they were no longer in the pricebook
+     * @return The number of removed products
+     */
+    long getDeleted();
+}
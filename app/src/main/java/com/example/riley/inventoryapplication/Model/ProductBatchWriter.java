@@ -0,0 +1,112 @@
+package com.example.riley.inventoryapplication.Model;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Writes products to the database in chunks, each chunk committed in a single explicit
+ * transaction through one compiled insert statement. Products whose barcode is already in
+ * the database are left untouched, the same as insertRecord
+ *
+ * A writer must only be used from the thread that created it, since SQLite transactions
+ * belong to the thread that began them
+ *
+ * @specfield DEFAULT_CHUNK_SIZE The number of products committed per transaction by default
+ */
+public class ProductBatchWriter {
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final String INSERT_IF_ABSENT = "INSERT OR IGNORE INTO " + SQLiteHelper.TABLE_NAME + " ("
+            + SQLiteHelper.COLUMN_CODE + ", " + SQLiteHelper.COLUMN_BRAND + ", " + SQLiteHelper.COLUMN_PRODUCT
+            + ") VALUES (?, ?, ?)";
+
+    private final SQLiteDatabase database;
+    private final BarcodeMembership membership;
+    private final SQLiteStatement insertStatement;
+    private final int chunkSize;
+    private int pending;
+    private long rowsWritten;
+
+    /**
+     * Constructor for a batch writer
+     * @param database The database to write to
+     * @param membership The barcodes stored in the database, kept up to date by this writer
+     * @param chunkSize The number of products committed per transaction
+     * @throws IllegalArgumentException membership == null || chunkSize < 1
+     */
+    ProductBatchWriter(SQLiteDatabase database, BarcodeMembership membership, int chunkSize) {
+        if (membership == null || chunkSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.database = database;
+        this.membership = membership;
+        this.chunkSize = chunkSize;
+        this.insertStatement = database.compileStatement(INSERT_IF_ABSENT);
+    }
+
+    /**
+     * Adds the given product to the current chunk, committing the chunk once it is full
+     * @param profile The product to be written
+     * @throws IllegalArgumentException profile == null
+     */
+    public void add(ProductProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException();
+        }
+        if (pending == 0) {
+            database.beginTransaction();
+        }
+        membership.add(profile.getBarcode());
+        insertStatement.bindLong(1, profile.getBarcode());
+        insertStatement.bindString(2, profile.getBrandName());
+        insertStatement.bindString(3, profile.getProductName());
+        try {
+            if (insertStatement.executeInsert() != -1) {
+                rowsWritten++;
+            }
+        } catch (RuntimeException e) {
+            // Roll back the whole chunk rather than committing part of it later
+            database.endTransaction();
+            pending = 0;
+            throw e;
+        } finally {
+            insertStatement.clearBindings();
+        }
+        pending++;
+        if (pending == chunkSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Commits the products added since the last commit
+     */
+    public void flush() {
+        if (pending > 0) {
+            try {
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+                pending = 0;
+            }
+        }
+    }
+
+    /**
+     * Commits any remaining products and releases the compiled statement
+     */
+    public void close() {
+        try {
+            flush();
+        } finally {
+            insertStatement.close();
+        }
+    }
+
+    /**
+     * Return the number of products actually inserted by this writer
+     * @return The number of new products inserted so far
+     */
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.riley.inventoryapplication.Model;
+
+/**
+ * A change to a single stored product: its barcode, how it changed, and the product as it
+ * is now stored
+ */
+public final class ProductChange {
+
+    /**
+     * How a product changed
+     */
+    public enum Kind {
+        INSERTED, UPDATED, DELETED
+    }
+
+    // Representation invariant
+    //  kind != null
+    //  profile == null iff kind == DELETED, otherwise profile.getBarcode() == barcode
+
+    private final Kind kind;
+    private final long barcode;
+    private final ProductProfile profile;
+
+    /**
+     * Constructor for a change
+     * @param kind How the product changed
+     * @param barcode The GTIN of the product
+     * @param profile The product as now stored, null if it was deleted
+     * @throws IllegalArgumentException kind == null || (profile == null) != (kind == DELETED)
+     */
+    ProductChange(Kind kind, long barcode, ProductProfile profile) {
+        if (kind == null || (profile == null) != (kind == Kind.DELETED)) {
+            throw new IllegalArgumentException();
+        }
+        this.kind = kind;
+        this.barcode = barcode;
+        this.profile = profile;
+    }
+
+    /**
+     * Return how the product changed
+     * @return The kind of change
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Return the barcode of the product that changed
+     * @return The GTIN of the product
+     */
+    public long getBarcode() {
+        return barcode;
+    }
+
+    /**
+     * Return the product as it is now stored
+     * @return The stored product, null if it was deleted
+     */
+    public ProductProfile getProfile() {
+        return profile;
+    }
+}
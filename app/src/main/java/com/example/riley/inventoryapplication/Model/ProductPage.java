@@ -0,0 +1,144 @@
+package com.example.riley.inventoryapplication.Model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One page of search results in brand order, along with the key the next page starts after.
+ * Pages are found by key rather than by offset, so fetching a page costs the same no matter
+ * how far into the results it is
+ */
+public class ProductPage {
+    // Representation invariant
+    //  products != null
+    //  nextKey == null || nextKey is the key of the last product in products
+
+    private final List<ProductProfile> products;
+    private final Key nextKey;
+
+    /**
+     * Constructor for a page of products
+     * @param products The products on this page, in brand order
+     * @param nextKey The key the next page starts after, null if this is the last page
+     */
+    ProductPage(List<ProductProfile> products, Key nextKey) {
+        this.products = Collections.unmodifiableList(products);
+        this.nextKey = nextKey;
+    }
+
+    /**
+     * Return the products on this page
+     * @return The products on this page, in brand order
+     */
+    public List<ProductProfile> getProducts() {
+        return products;
+    }
+
+    /**
+     * Return the key to pass to fetch the page after this one
+     * @return The key the next page starts after, null if this is the last page
+     */
+    public Key getNextKey() {
+        return nextKey;
+    }
+
+    /**
+     * Return whether there are more results after this page
+     * @return True if there is a next page
+     */
+    public boolean hasNext() {
+        return nextKey != null;
+    }
+
+    /**
+     * Narrows this page to the products matching a longer query, without going back to the
+     * store. Every word of a query must prefix a word of a product, so a query which extends
+     * another can only match fewer products; if this page holds every match of the shorter
+     * query, it holds every match of the longer one too
+     * @requires this is the first page of the results of previousQuery
+     * @param previousQuery The query this page was fetched for
+     * @param query The query to narrow the page to
+     * @return The only page of results of query, or null if query does not extend
+     * previousQuery or this page does not hold all of its results
+     */
+    public ProductPage narrow(String previousQuery, String query) {
+        if (hasNext() || previousQuery == null || query == null
+                || ProductSearchQuery.words(previousQuery).isEmpty()
+                || !query.toLowerCase(Locale.US).startsWith(previousQuery.toLowerCase(Locale.US))) {
+            return null;
+        }
+        List<String> words = ProductSearchQuery.words(query);
+        List<ProductProfile> narrowed = new ArrayList<>();
+        for (ProductProfile profile : products) {
+            if (ProductSearchQuery.matches(words, profile)) {
+                narrowed.add(profile);
+            }
+        }
+        return new ProductPage(narrowed, null);
+    }
+
+    /**
+     * The position of a product in brand order: its brand, then its barcode to order
+     * products of the same brand
+     */
+    public static final class Key {
+        // Orders products by brand, products without a brand first, then by barcode
+        static final Comparator<Key> BRAND_ORDER = new Comparator<Key>() {
+            @Override
+            public int compare(Key first, Key second) {
+                if (first.getBrand() == null || second.getBrand() == null) {
+                    if (first.getBrand() != second.getBrand()) {
+                        return first.getBrand() == null ? -1 : 1;
+                    }
+                } else {
+                    int byBrand = first.getBrand().compareTo(second.getBrand());
+                    if (byBrand != 0) {
+                        return byBrand;
+                    }
+                }
+                return Long.compare(first.getBarcode(), second.getBarcode());
+            }
+        };
+
+        private final String brand;
+        private final long barcode;
+
+        /**
+         * Constructor for the key of a product
+         * @param brand The brand of the product, may be null
+         * @param barcode The barcode of the product
+         */
+        Key(String brand, long barcode) {
+            this.brand = brand;
+            this.barcode = barcode;
+        }
+
+        /**
+         * Returns the position of the given product in brand order
+         * @param profile The product
+         * @return The key of the product
+         */
+        static Key of(ProductProfile profile) {
+            return new Key(profile.getBrandName(), profile.getBarcode());
+        }
+
+        /**
+         * Return the brand of the product at this position
+         * @return The brand, null if the product has none
+         */
+        String getBrand() {
+            return brand;
+        }
+
+        /**
+         * Return the barcode of the product at this position
+         * @return The barcode
+         */
+        long getBarcode() {
+            return barcode;
+        }
+    }
+}
@@ -5,30 +5,39 @@ package com.example.riley.inventoryapplication.Model;
  */
 public class ProductProfile {
     // Representation invariant
-    //  barcodeID != null
+    //  barcode >= 0
     //  brandName != null
     //  productName != null
 
-    private String barcodeID, brandName, productName;
+    private long barcode;
+    private String brandName, productName;
 
     /**
      * Constructor for a product profile
-     * @param bid The barcode for this product
+     * @param barcode The GTIN of this product, as normalized by Gtin
      * @param brand The brand of this product
      * @param product The actual product name
      */
-    public ProductProfile(String bid, String brand, String product) {
-        barcodeID = bid;
+    public ProductProfile(long barcode, String brand, String product) {
+        this.barcode = barcode;
         brandName = brand;
         productName = product;
     }
 
+    /**
+     * Return the GTIN of this product
+     * @return The barcode of this product as a GTIN
+     */
+    public long getBarcode() {
+        return barcode;
+    }
+
     /**
      * Return the barcode of this product as a string
      * @return The barcode of this object as a string
      */
     public String getBarcodeId() {
-        return barcodeID;
+        return Gtin.toString(barcode);
     }
 
     /**
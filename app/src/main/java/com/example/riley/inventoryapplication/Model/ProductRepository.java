@@ -0,0 +1,326 @@
+package com.example.riley.inventoryapplication.Model;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs product store work off the main and camera threads. Every request is queued on a
+ * small pool of background threads and its result handed to a callback on the main thread,
+ * so no screen ever waits on the database. Requests can be cancelled, singly or through a
+ * RequestGroup, when the screen that made them goes away
+ *
+ * Reads on different threads run at the same time under write-ahead logging, so the pool
+ * has more than one thread; writes are serialized by the database itself
+ *
+ * Every write through the repository or its store is reported to the repository's
+ * listeners on the main thread, so screens can patch what they show rather than search again
+ *
+ * @specfield THREAD_COUNT The number of threads running database work
+ */
+public class ProductRepository {
+    public static final int THREAD_COUNT = 2;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Callback for the result of a request, always called on the main thread
+     * @param <T> The type of the result
+     */
+    public interface Callback<T> {
+        /**
+         * Called with the result of a request that completed without being cancelled
+         * @param result The result of the request
+         */
+        void onResult(T result);
+    }
+
+    /**
+     * Callback which is also told, on the main thread, when the work of a request fails
+     * @param <T> The type of the result
+     */
+    public interface ErrorCallback<T> extends Callback<T> {
+        /**
+         * Called instead of onResult when the work of a request that was not cancelled threw
+         * @param error What the work threw
+         */
+        void onError(Throwable error);
+    }
+
+    private static ProductRepository instance;
+
+    private final NotifyingProductStore store;
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<ProductStoreListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor for a repository over the given store. The app uses the shared instance
+     * over its database; other stores are for tests and benchmarks
+     * @param store The store the requests run against
+     * @throws IllegalArgumentException store == null
+     */
+    public ProductRepository(ProductStore store) {
+        if (store == null) {
+            throw new IllegalArgumentException();
+        }
+        this.store = new NotifyingProductStore(store);
+        this.store.addListener(new MainThreadNotifier());
+        executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DatabaseThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the repository shared by the whole process, creating it on first use. It runs
+     * against the database, behind a cache of recently looked up barcodes
+     * @param context Any context of the application
+     * @return The shared repository
+     */
+    public static synchronized ProductRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new ProductRepository(new CachingProductStore(SQLiteHelper.getInstance(context),
+                    CachingProductStore.DEFAULT_CAPACITY));
+        }
+        return instance;
+    }
+
+    /**
+     * Return the store this repository runs against. Work which already runs in the
+     * background, such as an import, uses the store directly; writing through it keeps any
+     * cache in front of the database current and reports the writes to the listeners
+     * @return The store of this repository
+     */
+    public ProductStore getStore() {
+        return store;
+    }
+
+    /**
+     * Adds a listener to be told, on the main thread, of every later write
+     * @param listener The listener to add
+     * @throws IllegalArgumentException listener == null
+     */
+    public void addListener(ProductStoreListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException();
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added earlier
+     * @param listener The listener to remove
+     */
+    public void removeListener(ProductStoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Runs other work that must stay off the main thread on the database threads, such as
+     * working out how a list of products on screen changed
+     * @param work The work to run
+     * @param callback Given the result of the work, may be null
+     * @param <T> The type of the result
+     * @return The queued request
+     * @throws IllegalArgumentException work == null
+     */
+    public <T> ProductRequest<T> run(Callable<T> work, Callback<T> callback) {
+        if (work == null) {
+            throw new IllegalArgumentException();
+        }
+        return submit(work, callback);
+    }
+
+    /**
+     * Looks up the product with the given barcode
+     * @param barcode The GTIN to look up
+     * @param callback Given the product, or null if there is none
+     * @return The queued request
+     */
+    public ProductRequest<ProductProfile> findByBarcode(final long barcode, Callback<ProductProfile> callback) {
+        return submit(new Callable<ProductProfile>() {
+            @Override
+            public ProductProfile call() {
+                return store.findByBarcode(barcode);
+            }
+        }, callback);
+    }
+
+    /**
+     * Looks up the inventory count of the given barcode
+     * @param barcode The GTIN to look up
+     * @param callback Given the number of items counted, 0 if the barcode has never been counted
+     * @return The queued request
+     */
+    public ProductRequest<Long> findCount(final long barcode, Callback<Long> callback) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return store.findCount(barcode);
+            }
+        }, callback);
+    }
+
+    /**
+     * Fetches one page of the products matching the given query
+     * @param query Search value
+     * @param after The key the page starts after, null for the first page
+     * @param pageSize The largest number of products on the page
+     * @param callback Given the page
+     * @return The queued request
+     * @throws IllegalArgumentException pageSize < 1
+     */
+    public ProductRequest<ProductPage> searchPage(final String query, final ProductPage.Key after, final int pageSize,
+                                                  Callback<ProductPage> callback) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        return submit(new Callable<ProductPage>() {
+            @Override
+            public ProductPage call() {
+                return store.searchPage(query, after, pageSize);
+            }
+        }, callback);
+    }
+
+    /**
+     * Counts the products matching the given query
+     * @param query Search value
+     * @param callback Given the number of matching products
+     * @return The queued request
+     */
+    public ProductRequest<Integer> countMatches(final String query, Callback<Integer> callback) {
+        return submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return store.countMatches(query);
+            }
+        }, callback);
+    }
+
+    /**
+     * Stores the given product, replacing any product with the same barcode
+     * @param profile The product to be stored
+     * @param callback Called once the product is stored, may be null
+     * @return The queued request
+     * @throws IllegalArgumentException profile == null
+     */
+    public ProductRequest<Void> upsert(final ProductProfile profile, Callback<Void> callback) {
+        if (profile == null) {
+            throw new IllegalArgumentException();
+        }
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                store.upsertRecord(profile);
+                return null;
+            }
+        }, callback);
+    }
+
+    /**
+     * Deletes the given product
+     * @param profile The product to be deleted
+     * @param callback Called once the product is deleted, may be null
+     * @return The queued request
+     * @throws IllegalArgumentException profile == null
+     */
+    public ProductRequest<Void> delete(final ProductProfile profile, Callback<Void> callback) {
+        if (profile == null) {
+            throw new IllegalArgumentException();
+        }
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                store.deleteRecord(profile);
+                return null;
+            }
+        }, callback);
+    }
+
+    /**
+     * Finds the checkpoint of an unfinished import of the given pricebook
+     * @param source The path of the pricebook
+     * @param callback Given the checkpoint, or null if there is none
+     * @return The queued request
+     */
+    public ProductRequest<ImportCheckpoint> findCheckpoint(final String source, Callback<ImportCheckpoint> callback) {
+        return submit(new Callable<ImportCheckpoint>() {
+            @Override
+            public ImportCheckpoint call() {
+                return store.findCheckpoint(source);
+            }
+        }, callback);
+    }
+
+    /**
+     * Queues the given work on the database threads
+     * @param work The work to run
+     * @param callback Given the result of the work on the main thread, may be null
+     * @param <T> The type of the result
+     * @return The queued request
+     */
+    private <T> ProductRequest<T> submit(Callable<T> work, Callback<T> callback) {
+        ProductRequest<T> request = new ProductRequest<>(work, callback, mainHandler);
+        executor.execute(request);
+        return request;
+    }
+
+    /**
+     * Hands the writes reported by the store, on whichever thread made them, to the listeners
+     * of the repository on the main thread
+     */
+    private class MainThreadNotifier implements ProductStoreListener {
+        @Override
+        public void onProductChanged(final ProductChange change) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (ProductStoreListener listener : listeners) {
+                        listener.onProductChanged(change);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onProductsReplaced() {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (ProductStoreListener listener : listeners) {
+                        listener.onProductsReplaced();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Creates the database threads, at background priority so that they never compete with
+     * drawing the screen
+     */
+    private static class DatabaseThreadFactory implements ThreadFactory {
+        private final AtomicInteger created = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable work) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    work.run();
+                }
+            }, "ProductRepository-" + created.incrementAndGet());
+        }
+    }
+}
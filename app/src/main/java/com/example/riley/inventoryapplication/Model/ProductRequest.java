@@ -0,0 +1,93 @@
+package com.example.riley.inventoryapplication.Model;
+
+import android.os.Handler;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A database request queued on the product repository. Its result is handed to its callback
+ * on the main thread once the work is done, unless the request has been cancelled first. If
+ * the work fails, a callback which is an ErrorCallback is given the failure instead
+ *
+ * @param <T> The type of the result
+ */
+public class ProductRequest<T> extends FutureTask<T> {
+    private final ProductRepository.Callback<T> callback;
+    private final Handler mainHandler;
+    private volatile boolean abandoned;
+    // Set once the callback has been called or never will be
+    private volatile boolean settled;
+
+    /**
+     * Constructor for a request
+     * @param work The database work to run
+     * @param callback The callback given the result, may be null
+     * @param mainHandler The handler of the main thread
+     */
+    ProductRequest(Callable<T> work, ProductRepository.Callback<T> callback, Handler mainHandler) {
+        super(work);
+        this.callback = callback;
+        this.mainHandler = mainHandler;
+    }
+
+    /**
+     * Cancels this request. The work is skipped if it has not started yet, and the callback
+     * is never called, even if the work has already finished. Must be called on the main
+     * thread for the callback to be reliably suppressed
+     */
+    public void cancel() {
+        abandoned = true;
+        cancel(false);
+    }
+
+    /**
+     * Return whether this request has nothing left to do: its callback has been called, or
+     * never will be
+     * @return True if the request is settled
+     */
+    boolean isSettled() {
+        return settled;
+    }
+
+    @Override
+    protected void done() {
+        if (abandoned || isCancelled()) {
+            settled = true;
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                deliver();
+            }
+        });
+    }
+
+    /**
+     * Hands the result to the callback, on the main thread
+     */
+    private void deliver() {
+        settled = true;
+        if (abandoned) {
+            return;
+        }
+        T result;
+        try {
+            result = get();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            return;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            if (callback instanceof ProductRepository.ErrorCallback) {
+                ((ProductRepository.ErrorCallback<T>) callback).onError(e.getCause());
+            }
+            return;
+        }
+        if (callback != null) {
+            callback.onResult(result);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.riley.inventoryapplication.Model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Builds full text queries against the product search table and ranks their matches. A
+ * search is split into words the same way the table's tokenizer splits brands and product
+ * names, and every word must prefix some word of the brand or product name
+ *
+ * Matches are ranked from their matchinfo, since FTS4 has no ranking function of its own.
+ * Words that are rare across the catalogue count for more, and product name matches count
+ * for more than brand matches, since a brand on its own matches a whole product line. The
+ * same words and scores are used by InMemoryProductStore, so every store agrees on what
+ * matches and in what order
+ *
+ * @specfield MATCHINFO_FORMAT The matchinfo format relevance expects
+ * @specfield BRAND_COLUMN The index of the brand among the searched columns
+ * @specfield PRODUCT_COLUMN The index of the product name among the searched columns
+ */
+final class ProductSearchQuery {
+    static final String MATCHINFO_FORMAT = "pcnx";
+    static final int BRAND_COLUMN = 0;
+    static final int PRODUCT_COLUMN = 1;
+    // Weight of a match in each indexed column, in column order
+    private static final double[] COLUMN_WEIGHTS = {1.0, 2.0};
+
+    private ProductSearchQuery() {
+    }
+
+    /**
+     * Builds a MATCH expression requiring every word of the query as a prefix. Each word is
+     * quoted so that words like OR or NEAR and stray punctuation are never read as operators
+     * @param query The text typed by the user
+     * @return The MATCH expression, null if the query has no words
+     */
+    static String toMatchExpression(String query) {
+        StringBuilder match = new StringBuilder();
+        for (String word : words(query)) {
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(word).append("*\"");
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    /**
+     * Splits the given text into lower case words the way the search table's tokenizer does
+     * @param text The text to split, may be null
+     * @return The words of the text, in order
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        int length = text == null ? 0 : text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isTokenChar(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && isTokenChar(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                words.add(text.substring(start, i).toLowerCase(Locale.US));
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Determines whether every one of the given words prefixes some word of the brand or
+     * name of the given product, the same test the search table applies
+     * @param words The words of a query, from words
+     * @param profile The product to test
+     * @return True if the product matches every word
+     */
+    static boolean matches(List<String> words, ProductProfile profile) {
+        List<String> productWords = words(profile.getBrandName());
+        productWords.addAll(words(profile.getProductName()));
+        for (String word : words) {
+            boolean found = false;
+            for (String productWord : productWords) {
+                if (productWord.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scores a match from its matchinfo in MATCHINFO_FORMAT. Each word scores in each column
+     * by how often it occurs in the row, saturating quickly, times how rare it is overall
+     * @param matchinfo The matchinfo blob of the matching row
+     * @return The relevance of the row, higher is better
+     */
+    static double relevance(byte[] matchinfo) {
+        ByteBuffer info = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder());
+        int phrases = info.getInt(0);
+        int columns = info.getInt(4);
+        long rows = info.getInt(8) & 0xffffffffL;
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int base = 12 + 12 * (phrase * columns + column);
+                long hitsInRow = info.getInt(base) & 0xffffffffL;
+                long rowsWithHits = info.getInt(base + 8) & 0xffffffffL;
+                score += score(column, hitsInRow, rows, rowsWithHits);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Scores the matches of one query word in one column of a row
+     * @param column The index of the column
+     * @param hitsInRow The number of words in the column of this row the query word matches
+     * @param rows The number of rows searched
+     * @param rowsWithHits The number of rows with a match for the query word in the column
+     * @return The contribution of the word and column to the relevance of the row
+     */
+    static double score(int column, long hitsInRow, long rows, long rowsWithHits) {
+        if (hitsInRow <= 0) {
+            return 0;
+        }
+        double weight = column < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[column] : 1.0;
+        double rarity = Math.log(1.0 + (double) rows / Math.max(1, rowsWithHits));
+        return weight * rarity * hitsInRow / (hitsInRow + 1.0);
+    }
+
+    /**
+     * Offers a match to a queue of the best matches so far, which holds the worst of them at
+     * its head, keeping no more than the given number
+     * @param best The best matches so far
+     * @param limit The largest number of matches to keep
+     * @param barcode The barcode of the match
+     * @param score The relevance of the match
+     */
+    static void offer(PriorityQueue<RankedMatch> best, int limit, long barcode, double score) {
+        if (best.size() < limit) {
+            best.add(new RankedMatch(barcode, score));
+        } else if (score > best.peek().score) {
+            best.poll();
+            best.add(new RankedMatch(barcode, score));
+        }
+    }
+
+    /**
+     * Orders the best matches from most to least relevant
+     * @param best The best matches, as kept by offer
+     * @return The matches, most relevant first
+     */
+    static RankedMatch[] mostRelevantFirst(PriorityQueue<RankedMatch> best) {
+        RankedMatch[] ranked = best.toArray(new RankedMatch[best.size()]);
+        Arrays.sort(ranked, Collections.reverseOrder());
+        return ranked;
+    }
+
+    /**
+     * Determines whether the given character is part of a word, matching the simple
+     * tokenizer used by the search table
+     * @param c The character
+     * @return True if the character belongs to a word
+     */
+    private static boolean isTokenChar(char c) {
+        return c >= 0x80 || Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * A matching barcode and its relevance, ordered from least to most relevant. Ties are
+     * broken by barcode so the order of results is stable
+     */
+    static final class RankedMatch implements Comparable<RankedMatch> {
+        final long barcode;
+        final double score;
+
+        RankedMatch(long barcode, double score) {
+            this.barcode = barcode;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(RankedMatch other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : Long.compare(other.barcode, barcode);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.riley.inventoryapplication.Model;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.riley.inventoryapplication.Model.StatementStatistics.Statement;
+
+/**
+ * The statements run for single products, compiled once for a database and reused with
+ * bound arguments, so each call skips parsing and planning its SQL. Each execution is
+ * counted and timed in the given statistics
+ *
+ * A compiled statement can only return a single value, so finding a product runs a query
+ * whose SQL never changes instead. The connection keeps its own cache of prepared
+ * statements keyed by SQL, so that query is also only prepared once
+ *
+ * Writes must be made inside a transaction, so that the write connection is always taken
+ * before the lock on these statements. A thread holding the lock while it waits for the
+ * connection could deadlock with one holding the connection while it waits for the lock
+ */
+final class ProductStatements {
+    private static final String FIND_SQL = "SELECT " + SQLiteHelper.COLUMN_CODE + ", " + SQLiteHelper.COLUMN_BRAND + ", "
+            + SQLiteHelper.COLUMN_PRODUCT + " FROM " + SQLiteHelper.TABLE_NAME + " WHERE " + SQLiteHelper.COLUMN_CODE + " = ?";
+
+    private final SQLiteDatabase database;
+    private final StatementStatistics statistics;
+    private final SQLiteStatement exists;
+    private final SQLiteStatement insert;
+    private final SQLiteStatement update;
+    private final SQLiteStatement delete;
+    private final SQLiteStatement deleteFingerprint;
+
+    /**
+     * Constructor which compiles the statements for the given database
+     * @param database The database the statements run against
+     * @param statistics The statistics each execution is recorded in
+     */
+    ProductStatements(SQLiteDatabase database, StatementStatistics statistics) {
+        this.database = database;
+        this.statistics = statistics;
+        exists = database.compileStatement("SELECT count(*) FROM " + SQLiteHelper.TABLE_NAME + " WHERE "
+                + SQLiteHelper.COLUMN_CODE + " = ?");
+        insert = database.compileStatement("INSERT OR IGNORE INTO " + SQLiteHelper.TABLE_NAME + " ("
+                + SQLiteHelper.COLUMN_CODE + ", " + SQLiteHelper.COLUMN_BRAND + ", " + SQLiteHelper.COLUMN_PRODUCT
+                + ") VALUES (?, ?, ?)");
+        update = database.compileStatement("UPDATE " + SQLiteHelper.TABLE_NAME + " SET " + SQLiteHelper.COLUMN_BRAND
+                + " = ?, " + SQLiteHelper.COLUMN_PRODUCT + " = ? WHERE " + SQLiteHelper.COLUMN_CODE + " = ?");
+        delete = database.compileStatement("DELETE FROM " + SQLiteHelper.TABLE_NAME + " WHERE "
+                + SQLiteHelper.COLUMN_CODE + " = ?");
+        deleteFingerprint = database.compileStatement("DELETE FROM " + SQLiteHelper.FINGERPRINT_TABLE_NAME + " WHERE "
+                + SQLiteHelper.COLUMN_CODE + " = ?");
+    }
+
+    /**
+     * Return the database these statements were compiled for
+     * @return The database
+     */
+    SQLiteDatabase getDatabase() {
+        return database;
+    }
+
+    /**
+     * Finds the product with the given barcode
+     * @param barcode The GTIN to look up
+     * @return The product, null if there is none
+     */
+    ProductProfile find(long barcode) {
+        long start = System.nanoTime();
+        Cursor cursor = database.rawQuery(FIND_SQL, new String[]{Long.toString(barcode)});
+        try {
+            if (cursor.moveToFirst()) {
+                return new ProductProfile(cursor.getLong(0), cursor.getString(1), cursor.getString(2));
+            }
+            return null;
+        } finally {
+            cursor.close();
+            statistics.record(Statement.FIND, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Determines whether a product with the given barcode is stored
+     * @param barcode The GTIN to look up
+     * @return True if the barcode is stored
+     */
+    synchronized boolean exists(long barcode) {
+        long start = System.nanoTime();
+        try {
+            exists.bindLong(1, barcode);
+            return exists.simpleQueryForLong() > 0;
+        } finally {
+            statistics.record(Statement.EXISTS, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Inserts the given product unless its barcode is already stored
+     * @requires the caller holds a transaction on the database
+     * @param profile The product to insert
+     * @return True if the product was inserted
+     */
+    synchronized boolean insert(ProductProfile profile) {
+        long start = System.nanoTime();
+        try {
+            insert.bindLong(1, profile.getBarcode());
+            SQLiteHelper.bindNullable(insert, 2, profile.getBrandName());
+            SQLiteHelper.bindNullable(insert, 3, profile.getProductName());
+            return insert.executeInsert() != -1;
+        } finally {
+            statistics.record(Statement.INSERT, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Replaces the brand and name of the stored product with the same barcode
+     * @requires the caller holds a transaction on the database
+     * @param profile The new details of the product
+     * @return True if a product was updated
+     */
+    synchronized boolean update(ProductProfile profile) {
+        long start = System.nanoTime();
+        try {
+            SQLiteHelper.bindNullable(update, 1, profile.getBrandName());
+            SQLiteHelper.bindNullable(update, 2, profile.getProductName());
+            update.bindLong(3, profile.getBarcode());
+            return update.executeUpdateDelete() > 0;
+        } finally {
+            statistics.record(Statement.UPDATE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Deletes the product with the given barcode along with its import fingerprint, so the
+     * next import adds the product back if it is still listed
+     * @requires the caller holds a transaction on the database
+     * @param barcode The GTIN of the product
+     * @return True if a product was deleted
+     */
+    synchronized boolean delete(long barcode) {
+        long start = System.nanoTime();
+        try {
+            delete.bindLong(1, barcode);
+            deleteFingerprint.bindLong(1, barcode);
+            boolean deleted = delete.executeUpdateDelete() > 0;
+            deleteFingerprint.executeUpdateDelete();
+            return deleted;
+        } finally {
+            statistics.record(Statement.DELETE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Releases the compiled statements
+     */
+    synchronized void close() {
+        exists.close();
+        insert.close();
+        update.close();
+        delete.close();
+        deleteFingerprint.close();
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.riley.inventoryapplication.Model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage for the product catalogue. The app keeps its products in SQLite through
+ * SQLiteHelper, while InMemoryProductStore keeps them on the heap so that importing,
+ * searching and scanning can be tested and benchmarked on a plain JVM
+ *
+ * Searches match every word of the query against the start of a word of the brand or name
+ * of a product, the same way for every store. Implementations must be safe to call from
+ * several threads at once
+ */
+public interface ProductStore {
+
+    /**
+     * Inserts the given product, unless its barcode is already stored
+     * @param profile The product to be added
+     * @throws IllegalArgumentException profile == null
+     */
+    void insertRecord(ProductProfile profile);
+
+    /**
+     * Stores the given product, replacing the brand and name of any product already stored
+     * with the same barcode
+     * @param profile The product to be stored
+     * @throws IllegalArgumentException profile == null
+     */
+    void upsertRecord(ProductProfile profile);
+
+    /**
+     * Inserts all of the given products, skipping any whose barcode is already stored
+     * @param profiles The products to be added
+     * @return The number of products actually inserted
+     * @throws IllegalArgumentException profiles == null or contains null
+     */
+    long insertAll(Iterable<ProductProfile> profiles);
+
+    /**
+     * Updates the brand and name of the stored product with the same barcode
+     * @requires the product given is already stored
+     * @param profile The new details of the product
+     */
+    void updateRecord(ProductProfile profile);
+
+    /**
+     * Deletes the given product, forgetting that it was ever imported so that the next
+     * import adds it back if it is still listed
+     * @param profile The product to be deleted
+     */
+    void deleteRecord(ProductProfile profile);
+
+    /**
+     * Deletes every product, along with the history of earlier imports
+     */
+    void deleteAll();
+
+    /**
+     * Finds the product with the given barcode
+     * @param barcode The GTIN to search for
+     * @return The product with the barcode, null if there is none
+     */
+    ProductProfile findByBarcode(long barcode);
+
+    /**
+     * Determines whether a product with the same barcode as the given one is stored
+     * @param profile The product to be checked
+     * @return True if the barcode is stored, false otherwise
+     */
+    boolean contains(ProductProfile profile);
+
+    /**
+     * Finds the products matching the given query, most relevant first
+     * @param query Search value
+     * @param limit The largest number of products to return
+     * @return The most relevant matching products
+     * @throws IllegalArgumentException limit < 1
+     */
+    List<ProductProfile> searchByRelevance(String query, int limit);
+
+    /**
+     * Fetches one page of the products matching the given query, in order of brand and then
+     * barcode
+     * @param query Search value
+     * @param after The key the page starts after, from the previous page; null for the first page
+     * @param pageSize The largest number of products on the page
+     * @return The page of matching products
+     * @throws IllegalArgumentException pageSize < 1
+     */
+    ProductPage searchPage(String query, ProductPage.Key after, int pageSize);
+
+    /**
+     * Counts the products matching the given query
+     * @param query Search value
+     * @return The number of matching products
+     */
+    int countMatches(String query);
+
+    /**
+     * Adds the given numbers of items to the inventory counts of their barcodes, all at once
+     * so that a batch of scans is either counted whole or not at all. A barcode need not
+     * belong to a stored product, and its count is kept when products are deleted
+     * @param counts The number of items to add, by barcode
+     * @throws IllegalArgumentException counts == null or holds a null or negative count
+     */
+    void addCounts(Map<Long, Integer> counts);
+
+    /**
+     * Finds the inventory count of the given barcode
+     * @param barcode The GTIN to look up
+     * @return The number of items counted with the barcode, 0 if it has never been counted
+     */
+    long findCount(long barcode);
+
+    /**
+     * Finds the checkpoint of an unfinished import of the given pricebook
+     * @param source The path of the pricebook
+     * @return The last committed checkpoint for the pricebook, null if it has none
+     */
+    ImportCheckpoint findCheckpoint(String source);
+
+    /**
+     * Creates a writer which applies a pricebook as a delta against the previous import,
+     * committing each chunk of lines along with a checkpoint
+     * @param chunkSize The number of lines applied per commit
+     * @param start The checkpoint the import starts from
+     * @return A new writer for this store
+     * @throws IllegalArgumentException chunkSize < 1 || start == null
+     */
+    PricebookWriter newDeltaWriter(int chunkSize, ImportCheckpoint start);
+}
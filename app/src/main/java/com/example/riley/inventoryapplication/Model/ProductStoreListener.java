@@ -0,0 +1,20 @@
+package com.example.riley.inventoryapplication.Model;
+
+/**
+ * Listens for writes to a product store, so that products already on screen can be brought
+ * up to date without searching again
+ */
+public interface ProductStoreListener {
+
+    /**
+     * Called after a single product was inserted, updated or deleted
+     * @param change The change to the product
+     */
+    void onProductChanged(ProductChange change);
+
+    /**
+     * Called after a write which may have changed any number of products at once, such as an
+     * import or deleting everything
+     */
+    void onProductsReplaced();
+}
@@ -0,0 +1,41 @@
+package com.example.riley.inventoryapplication.Model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The repository requests made on behalf of one screen, so that they can all be cancelled
+ * when the screen goes away or their results are no longer wanted. Only used on the main
+ * thread
+ */
+public class RequestGroup {
+    private final List<ProductRequest<?>> requests = new ArrayList<>();
+
+    /**
+     * Adds a request to this group, forgetting any requests that have already settled
+     * @param request The request to add
+     * @param <T> The type of the result of the request
+     * @return The request
+     */
+    public <T> ProductRequest<T> add(ProductRequest<T> request) {
+        Iterator<ProductRequest<?>> pending = requests.iterator();
+        while (pending.hasNext()) {
+            if (pending.next().isSettled()) {
+                pending.remove();
+            }
+        }
+        requests.add(request);
+        return request;
+    }
+
+    /**
+     * Cancels every request in this group
+     */
+    public void cancelAll() {
+        for (ProductRequest<?> request : requests) {
+            request.cancel();
+        }
+        requests.clear();
+    }
+}
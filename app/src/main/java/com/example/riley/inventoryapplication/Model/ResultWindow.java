@@ -0,0 +1,56 @@
+package com.example.riley.inventoryapplication.Model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the search results loaded so far up to date as single products change, without
+ * searching again. The loaded results are the matches of the query in brand order up to the
+ * last product loaded, and the next page is fetched after that product's key, so a change
+ * only needs patching in if it falls at or before that key; anything after it arrives with
+ * a later page
+ */
+public final class ResultWindow {
+
+    private ResultWindow() {
+    }
+
+    /**
+     * Works out the loaded results after the given change
+     * @param loaded The results loaded so far, in brand order
+     * @param complete Whether the loaded results are every match of the query
+     * @param query The query the results match
+     * @param change The change to a product
+     * @return A new list of the loaded results with the change applied
+     * @throws IllegalArgumentException loaded == null || change == null
+     */
+    public static List<ProductProfile> patch(List<ProductProfile> loaded, boolean complete, String query,
+                                             ProductChange change) {
+        if (loaded == null || change == null) {
+            throw new IllegalArgumentException();
+        }
+        List<ProductProfile> patched = new ArrayList<>(loaded.size() + 1);
+        List<ProductPage.Key> keys = new ArrayList<>(loaded.size() + 1);
+        for (ProductProfile profile : loaded) {
+            if (profile.getBarcode() != change.getBarcode()) {
+                patched.add(profile);
+                keys.add(ProductPage.Key.of(profile));
+            }
+        }
+        ProductProfile changed = change.getProfile();
+        List<String> words = ProductSearchQuery.words(query);
+        if (changed == null || words.isEmpty() || !ProductSearchQuery.matches(words, changed)) {
+            return patched;
+        }
+        ProductPage.Key key = ProductPage.Key.of(changed);
+        if (!complete && (loaded.isEmpty()
+                || ProductPage.Key.BRAND_ORDER.compare(key, ProductPage.Key.of(loaded.get(loaded.size() - 1))) > 0)) {
+            // Beyond the last product loaded, so a later page will bring it
+            return patched;
+        }
+        int position = Collections.binarySearch(keys, key, ProductPage.Key.BRAND_ORDER);
+        patched.add(position < 0 ? -position - 1 : position, changed);
+        return patched;
+    }
+}
@@ -1,33 +1,91 @@
 package com.example.riley.inventoryapplication.Model;
 
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Process;
+import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 /**
- * This class controls access to an SQLite database
+ * This class controls access to an SQLite database. There is a single instance for the whole
+ * process, so every screen and the background import share one connection pool, which is
+ * kept open for the life of the process rather than closed after each use
+ *
+ * The database uses write-ahead logging. Readers see the last committed state while a
+ * writer is in a transaction, so scanning and searching are not blocked by a running import,
+ * and reads on different threads run at the same time on their own connections
+ *
+ * Every stored barcode is also kept in memory, loaded in the background whenever the
+ * database is opened, so that looking up a barcode which is not stored, as most scans of
+ * new stock and most lines of a first import do, never reaches the database
  */
-public class SQLiteHelper extends SQLiteOpenHelper {
-    private static final int DATABASE_VERSION = 1;
+public class SQLiteHelper extends SQLiteOpenHelper implements ProductStore {
+    private static final String TAG = "SQLiteHelper";
+    private static final int DATABASE_VERSION = 9;
     private static final String DATABASE_NAME = "ProductDatabase.db";
 
+    private static SQLiteHelper instance;
+
     /**
      * Constructor for an SQLiteHelper
-     * @param context
+     * @param context The application context
      */
-    public SQLiteHelper(Context context) {
+    private SQLiteHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Returns the helper shared by the whole process, creating it on first use
+     * @param context Any context of the application
+     * @return The shared helper
+     */
+    public static synchronized SQLiteHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new SQLiteHelper(context.getApplicationContext());
+        }
+        return instance;
     }
 
-    private static final String TABLE_NAME = "ProductsAvailable";
-    private static final String COLUMN_CODE = "BarcodeID";
-    private static final String COLUMN_BRAND = "Brand";
-    private static final String COLUMN_PRODUCT = "Product";
+    static final String TABLE_NAME = "ProductsAvailable";
+    static final String COLUMN_CODE = "BarcodeID";
+    static final String COLUMN_BRAND = "Brand";
+    static final String COLUMN_PRODUCT = "Product";
+    private static final String INDEX_CODE = "ProductsByBarcode";
+    private static final String INDEX_BRAND = "ProductsByBrand";
+    static final String FINGERPRINT_TABLE_NAME = "PricebookFingerprints";
+    static final String COLUMN_FINGERPRINT = "Fingerprint";
+    static final String COLUMN_GENERATION = "Generation";
+    static final String CHECKPOINT_TABLE_NAME = "ImportCheckpoints";
+    static final String COLUMN_SOURCE = "Source";
+    static final String COLUMN_SOURCE_LENGTH = "SourceLength";
+    static final String COLUMN_SOURCE_MODIFIED = "SourceModified";
+    static final String COLUMN_OFFSET = "ByteOffset";
+    static final String COUNT_TABLE_NAME = "InventoryCounts";
+    static final String COLUMN_COUNT = "Count";
+    private static final String LEGACY_TABLE_NAME = "ProductsAvailableLegacy";
+    static final String SEARCH_TABLE_NAME = "ProductSearch";
+    private static final String SEARCH_INSERT_TRIGGER = "ProductSearchInsert";
+    private static final String SEARCH_BEFORE_UPDATE_TRIGGER = "ProductSearchBeforeUpdate";
+    private static final String SEARCH_AFTER_UPDATE_TRIGGER = "ProductSearchAfterUpdate";
+    private static final String SEARCH_DELETE_TRIGGER = "ProductSearchDelete";
+    private static final int LOOKUP_BATCH_SIZE = 500;
+    // Small enough that each chunk fits one cursor window, so no chunk is read twice
+    private static final int MEMBERSHIP_CHUNK_SIZE = 10000;
+    private static final String READ_BARCODES_SQL = "SELECT " + COLUMN_CODE + " FROM " + TABLE_NAME + " WHERE "
+            + COLUMN_CODE + " > ? ORDER BY " + COLUMN_CODE + " LIMIT " + MEMBERSHIP_CHUNK_SIZE;
+
+    private final StatementStatistics statementStatistics = new StatementStatistics();
+    private final BarcodeMembership membership = new BarcodeMembership();
+    private ProductStatements statements;
 
     /**
      * On creation of this activity creates an SQLite database table for
@@ -37,63 +95,535 @@ public class SQLiteHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onCreate(SQLiteDatabase database) {
-        database.execSQL("create table " + TABLE_NAME + " (" + COLUMN_CODE + " VARCHAR, " + COLUMN_BRAND + " VARCHAR, " + COLUMN_PRODUCT + " VARCHAR);");
+        createProductTable(database);
+        createFingerprintTable(database);
+        createCheckpointTable(database);
+        createSearchTable(database);
+        createBrandIndex(database);
+        createCountTable(database);
+    }
+
+    /**
+     * Starts loading the stored barcodes each time the database is opened
+     *
+     * @param database The database
+     */
+    @Override
+    public void onOpen(SQLiteDatabase database) {
+        super.onOpen(database);
+        loadMembership(database);
+    }
+
+    /**
+     * Loads every stored barcode into the membership index on a background thread, in
+     * chunks read by key so that writes made meanwhile cannot make it skip a barcode. Lookups
+     * go to the database as before until the load finishes, and a failed load leaves them
+     * doing so
+     *
+     * @param database The open database
+     */
+    private void loadMembership(final SQLiteDatabase database) {
+        final int generation = membership.startLoading();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    membership.load(new BarcodeMembership.ChunkReader() {
+                        @Override
+                        public int read(long after, long[] into) {
+                            return readBarcodes(database, after, into);
+                        }
+                    }, MEMBERSHIP_CHUNK_SIZE, generation);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, "BarcodeMembership").start();
     }
 
+    /**
+     * Reads the smallest stored barcodes greater than the given one. The barcode is the
+     * rowid, so this is a range of the table in order, without sorting
+     *
+     * @param database The open database
+     * @param after The barcode to read after
+     * @param into The array to read into, holding MEMBERSHIP_CHUNK_SIZE barcodes
+     * @return The number of barcodes read
+     */
+    private static int readBarcodes(SQLiteDatabase database, long after, long[] into) {
+        Cursor cursor = database.rawQuery(READ_BARCODES_SQL, new String[]{Long.toString(after)});
+        try {
+            int count = 0;
+            while (count < into.length && cursor.moveToNext()) {
+                into[count++] = cursor.getLong(0);
+            }
+            return count;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Upgrades the database one version at a time, keeping the products already stored
+     *
+     * @param database The database
+     * @param oldVersion The version of the database on disk
+     * @param newVersion The version this helper expects
+     */
     @Override
     public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
-        database.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
-        onCreate(database);
+        if (oldVersion < 2) {
+            createBarcodeIndex(database);
+        }
+        if (oldVersion < 3) {
+            createFingerprintTable(database);
+        }
+        if (oldVersion < 4) {
+            createCheckpointTable(database);
+        }
+        if (oldVersion < 5) {
+            migrateToIntegerBarcodes(database);
+        } else if (oldVersion < 6) {
+            migrateToBarcodeKey(database);
+        }
+        if (oldVersion < 7) {
+            createSearchTable(database);
+            database.execSQL("INSERT INTO " + SEARCH_TABLE_NAME + " (" + SEARCH_TABLE_NAME + ") VALUES ('rebuild');");
+        }
+        if (oldVersion < 8) {
+            createBrandIndex(database);
+        }
+        if (oldVersion < 9) {
+            createCountTable(database);
+        }
+    }
+
+    /**
+     * Creates the index which orders products by brand. Every index entry ends with the rowid,
+     * so the index is already in the (brand, barcode) order that pages of results are read in
+     *
+     * @param database The database
+     */
+    private void createBrandIndex(SQLiteDatabase database) {
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_BRAND + " ON " + TABLE_NAME + " (" + COLUMN_BRAND + ");");
     }
 
     /**
-     * Inserts the given product into the database
+     * Creates the full text index over the brand and name of every product, and the triggers
+     * which keep it in step with the product table. The index stores no copy of the text; its
+     * docids are the rowids of the product table, which are the barcodes. Prefixes of two and
+     * three characters are indexed so that prefix searches do not scan the whole term list
+     *
+     * @param database The database
+     */
+    private void createSearchTable(SQLiteDatabase database) {
+        database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + SEARCH_TABLE_NAME + " USING fts4(content=\"" + TABLE_NAME
+                + "\", " + COLUMN_BRAND + ", " + COLUMN_PRODUCT + ", prefix=\"2,3\");");
+        String insertNew = "INSERT INTO " + SEARCH_TABLE_NAME + " (docid, " + COLUMN_BRAND + ", " + COLUMN_PRODUCT
+                + ") VALUES (new.rowid, new." + COLUMN_BRAND + ", new." + COLUMN_PRODUCT + "); END;";
+        String deleteOld = "DELETE FROM " + SEARCH_TABLE_NAME + " WHERE docid = old.rowid; END;";
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS " + SEARCH_INSERT_TRIGGER + " AFTER INSERT ON " + TABLE_NAME
+                + " BEGIN " + insertNew);
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS " + SEARCH_BEFORE_UPDATE_TRIGGER + " BEFORE UPDATE ON "
+                + TABLE_NAME + " BEGIN " + deleteOld);
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS " + SEARCH_AFTER_UPDATE_TRIGGER + " AFTER UPDATE ON "
+                + TABLE_NAME + " BEGIN " + insertNew);
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS " + SEARCH_DELETE_TRIGGER + " BEFORE DELETE ON " + TABLE_NAME
+                + " BEGIN " + deleteOld);
+    }
+
+    /**
+     * Creates the table of products. The GTIN of each product is its primary key and the
+     * rowid of the table, so a barcode lookup is a single B-tree search and a barcode can
+     * only be stored once
+     *
+     * @param database The database
+     */
+    private void createProductTable(SQLiteDatabase database) {
+        database.execSQL("create table " + TABLE_NAME + " (" + COLUMN_CODE + " INTEGER PRIMARY KEY, " + COLUMN_BRAND + " VARCHAR, " + COLUMN_PRODUCT + " VARCHAR);");
+    }
+
+    /**
+     * Rebuilds the product table with barcodes stored as GTIN integers instead of strings.
+     * Where several products share a barcode the first stored is kept. Fingerprints and
+     * checkpoints are keyed by the old strings, so they are cleared and the next import
+     * applies every line again
+     *
+     * @param database The database
+     */
+    private void migrateToIntegerBarcodes(SQLiteDatabase database) {
+        database.execSQL("ALTER TABLE " + TABLE_NAME + " RENAME TO " + LEGACY_TABLE_NAME);
+        createProductTable(database);
+        SQLiteStatement insert = database.compileStatement("INSERT OR IGNORE INTO " + TABLE_NAME + " (" + COLUMN_CODE
+                + ", " + COLUMN_BRAND + ", " + COLUMN_PRODUCT + ") VALUES (?, ?, ?)");
+        Cursor cursor = database.query(LEGACY_TABLE_NAME, new String[]{COLUMN_CODE, COLUMN_BRAND, COLUMN_PRODUCT},
+                null, null, null, null, "rowid");
+        try {
+            while (cursor.moveToNext()) {
+                long barcode = migrateBarcode(cursor.getString(0));
+                if (barcode == Gtin.INVALID) {
+                    Log.w(TAG, "Dropping product with unreadable barcode " + cursor.getString(0));
+                    continue;
+                }
+                insert.bindLong(1, barcode);
+                bindNullable(insert, 2, cursor.getString(1));
+                bindNullable(insert, 3, cursor.getString(2));
+                insert.executeInsert();
+            }
+        } finally {
+            cursor.close();
+            insert.close();
+        }
+        // Dropping the old table drops its barcode index too, which the primary key replaces
+        database.execSQL("DROP TABLE " + LEGACY_TABLE_NAME);
+        database.execSQL("DROP TABLE IF EXISTS " + FINGERPRINT_TABLE_NAME);
+        createFingerprintTable(database);
+        database.delete(CHECKPOINT_TABLE_NAME, null, null);
+    }
+
+    /**
+     * Rebuilds the product table with the barcode as its primary key, keeping the first
+     * product stored for each barcode and dropping any later duplicates
+     *
+     * @param database The database
+     */
+    private void migrateToBarcodeKey(SQLiteDatabase database) {
+        database.execSQL("ALTER TABLE " + TABLE_NAME + " RENAME TO " + LEGACY_TABLE_NAME);
+        createProductTable(database);
+        String columns = COLUMN_CODE + ", " + COLUMN_BRAND + ", " + COLUMN_PRODUCT;
+        database.execSQL("INSERT OR IGNORE INTO " + TABLE_NAME + " (" + columns + ") SELECT " + columns + " FROM "
+                + LEGACY_TABLE_NAME + " ORDER BY rowid;");
+        database.execSQL("DROP TABLE " + LEGACY_TABLE_NAME);
+    }
+
+    /**
+     * Converts a barcode stored as a string by an earlier version to a GTIN. Earlier imports
+     * padded short barcodes with trailing zeros after their check digit, so those zeros are
+     * stripped until a valid barcode is found. A numeric barcode that is still not valid is
+     * kept as it is, so that the product is not lost
+     *
+     * @param stored The barcode as stored by an earlier version
+     * @return The GTIN of the barcode, Gtin.INVALID if it is not a number
+     */
+    private static long migrateBarcode(String stored) {
+        if (stored == null) {
+            return Gtin.INVALID;
+        }
+        String digits = stored.trim();
+        if (digits.isEmpty() || digits.length() > 14 || !digits.matches("[0-9]+")) {
+            return Gtin.INVALID;
+        }
+        long barcode = Gtin.parse(digits);
+        if (barcode != Gtin.INVALID) {
+            return barcode;
+        }
+        for (int end = digits.length() - 1; end >= 2 && digits.charAt(end) == '0'; end--) {
+            long unpadded = Long.parseLong(digits.substring(0, end));
+            if (Gtin.isValid(unpadded)) {
+                return unpadded;
+            }
+        }
+        return Long.parseLong(digits);
+    }
+
+    /**
+     * Binds the given string, or null, to a statement parameter
+     *
+     * @param statement The statement to bind to
+     * @param index The index of the parameter
+     * @param value The value to bind, may be null
+     */
+    static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Creates the index used to check whether a barcode is already stored, needed by
+     * versions before the barcode became the primary key
+     *
+     * @param database The database
+     */
+    private void createBarcodeIndex(SQLiteDatabase database) {
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_CODE + " ON " + TABLE_NAME + " (" + COLUMN_CODE + ");");
+    }
+
+    /**
+     * Inserts the given product into the database, unless its barcode is already stored
      *
      * @param profile The product to be added to the database
      * @throws IllegalArgumentException profile == null
      */
+    @Override
     public void insertRecord(ProductProfile profile) {
         if (profile == null) {
             throw new IllegalArgumentException();
         }
-        if (!contains(profile)) {
-            SQLiteDatabase database = getReadableDatabase();
-            ContentValues content = createContent(profile);
-            database.insert(TABLE_NAME, null, content);
+        ProductStatements statements = statements();
+        SQLiteDatabase database = statements.getDatabase();
+        membership.add(profile.getBarcode());
+        // The connection is taken before the statements, in the same order as every other write
+        database.beginTransaction();
+        try {
+            statements.insert(profile);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
         }
     }
 
     /**
-     * Closes the readable database
+     * Stores the given product, replacing the brand and name of any product already stored
+     * with the same barcode. INSERT ... ON CONFLICT DO UPDATE needs a newer SQLite than the
+     * oldest supported devices ship, so the insert is tried first and the row updated if the
+     * barcode was taken, both in one transaction
+     *
+     * @param profile The product to be stored
+     * @throws IllegalArgumentException profile == null
      */
-    public void closeDatabase() {
-        getReadableDatabase().close();
+    @Override
+    public void upsertRecord(ProductProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException();
+        }
+        ProductStatements statements = statements();
+        SQLiteDatabase database = statements.getDatabase();
+        membership.add(profile.getBarcode());
+        database.beginTransaction();
+        try {
+            if (!statements.insert(profile)) {
+                statements.update(profile);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
     }
 
     /**
-     * Updates the given product in the database
+     * Creates the table holding the fingerprint of every imported pricebook line
      *
-     * @requires the product given is already in the database
-     * @param profile The profile to be updated
+     * @param database The database
      */
-    public void updateRecord(ProductProfile profile) {
+    private void createFingerprintTable(SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + FINGERPRINT_TABLE_NAME + " (" + COLUMN_CODE + " INTEGER PRIMARY KEY, "
+                + COLUMN_FINGERPRINT + " INTEGER NOT NULL, " + COLUMN_GENERATION + " INTEGER NOT NULL);");
+    }
+
+    /**
+     * Creates the table holding the checkpoints of unfinished imports
+     *
+     * @param database The database
+     */
+    private void createCheckpointTable(SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + CHECKPOINT_TABLE_NAME + " (" + COLUMN_SOURCE + " VARCHAR PRIMARY KEY, "
+                + COLUMN_SOURCE_LENGTH + " INTEGER NOT NULL, " + COLUMN_SOURCE_MODIFIED + " INTEGER NOT NULL, "
+                + COLUMN_OFFSET + " INTEGER NOT NULL, " + COLUMN_GENERATION + " INTEGER NOT NULL);");
+    }
+
+    /**
+     * Creates the table holding the inventory count of every scanned barcode. It is kept
+     * apart from the products, so counting a barcode never waits on or changes the catalogue
+     *
+     * @param database The database
+     */
+    private void createCountTable(SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + COUNT_TABLE_NAME + " (" + COLUMN_CODE + " INTEGER PRIMARY KEY, "
+                + COLUMN_COUNT + " INTEGER NOT NULL);");
+    }
+
+    /**
+     * Adds the given numbers of items to the inventory counts of their barcodes in a single
+     * transaction. As with upsertRecord, each count is added by an update, and inserted only
+     * where the barcode has no row yet
+     *
+     * @param counts The number of items to add, by barcode
+     * @throws IllegalArgumentException counts == null or holds a null or negative count
+     */
+    @Override
+    public void addCounts(Map<Long, Integer> counts) {
+        if (counts == null) {
+            throw new IllegalArgumentException();
+        }
+        for (Integer count : counts.values()) {
+            if (count == null || count < 0) {
+                throw new IllegalArgumentException();
+            }
+        }
+        SQLiteDatabase database = getWritableDatabase();
+        SQLiteStatement update = database.compileStatement("UPDATE " + COUNT_TABLE_NAME + " SET " + COLUMN_COUNT
+                + " = " + COLUMN_COUNT + " + ? WHERE " + COLUMN_CODE + " = ?");
+        SQLiteStatement insert = database.compileStatement("INSERT INTO " + COUNT_TABLE_NAME + " (" + COLUMN_CODE
+                + ", " + COLUMN_COUNT + ") VALUES (?, ?)");
+        database.beginTransaction();
+        try {
+            for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+                update.bindLong(1, entry.getValue());
+                update.bindLong(2, entry.getKey());
+                if (update.executeUpdateDelete() == 0) {
+                    insert.bindLong(1, entry.getKey());
+                    insert.bindLong(2, entry.getValue());
+                    insert.executeInsert();
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            update.close();
+            insert.close();
+        }
+    }
+
+    /**
+     * Finds the inventory count of the given barcode
+     *
+     * @param barcode The GTIN to look up
+     * @return The number of items counted with the barcode, 0 if it has never been counted
+     */
+    @Override
+    public long findCount(long barcode) {
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT " + COLUMN_COUNT + " FROM " + COUNT_TABLE_NAME
+                + " WHERE " + COLUMN_CODE + " = ?", new String[]{Long.toString(barcode)});
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Inserts all of the given products, committing them in chunks of the default size.
+     * Products whose barcode is already in the database are skipped
+     *
+     * @param profiles The products to be added to the database
+     * @return The number of products actually inserted
+     * @throws IllegalArgumentException profiles == null or contains null
+     */
+    @Override
+    public long insertAll(Iterable<ProductProfile> profiles) {
+        if (profiles == null) {
+            throw new IllegalArgumentException();
+        }
+        ProductBatchWriter writer = newBatchWriter(ProductBatchWriter.DEFAULT_CHUNK_SIZE);
+        try {
+            for (ProductProfile profile : profiles) {
+                writer.add(profile);
+            }
+        } finally {
+            writer.close();
+        }
+        return writer.getRowsWritten();
+    }
+
+    /**
+     * Creates a writer which inserts products in chunks, committing each chunk in a single
+     * transaction
+     *
+     * @param chunkSize The number of products committed per transaction
+     * @return A new batch writer for this database
+     * @throws IllegalArgumentException chunkSize < 1
+     */
+    public ProductBatchWriter newBatchWriter(int chunkSize) {
+        return new ProductBatchWriter(getWritableDatabase(), membership, chunkSize);
+    }
+
+    /**
+     * Creates a writer which applies a pricebook as a delta against the previous import,
+     * committing each chunk of lines in a single transaction along with a checkpoint
+     *
+     * @param chunkSize The number of lines applied per transaction
+     * @param start The checkpoint the import starts from
+     * @return A new delta writer for this database
+     * @throws IllegalArgumentException chunkSize < 1 || start == null
+     */
+    @Override
+    public PricebookDeltaWriter newDeltaWriter(int chunkSize, ImportCheckpoint start) {
+        return new PricebookDeltaWriter(getWritableDatabase(), membership, chunkSize, start);
+    }
+
+    /**
+     * Finds the checkpoint of an unfinished import of the given pricebook
+     *
+     * @param source The path of the pricebook
+     * @return The last committed checkpoint for the pricebook, null if it has none
+     */
+    @Override
+    public ImportCheckpoint findCheckpoint(String source) {
         SQLiteDatabase database = getReadableDatabase();
-        ContentValues content = createContent(profile);
-        database.update(TABLE_NAME, content, COLUMN_CODE + " = ?", new String[]{profile.getBarcodeId()});
+        Cursor cursor = database.query(CHECKPOINT_TABLE_NAME, new String[]{COLUMN_SOURCE, COLUMN_SOURCE_LENGTH,
+                COLUMN_SOURCE_MODIFIED, COLUMN_OFFSET, COLUMN_GENERATION}, COLUMN_SOURCE + " = ?",
+                new String[]{source}, null, null, null, "1");
+        try {
+            if (cursor.moveToFirst()) {
+                return new ImportCheckpoint(cursor.getString(0), cursor.getLong(1), cursor.getLong(2),
+                        cursor.getLong(3), cursor.getLong(4));
+            }
+            return null;
+        } finally {
+            cursor.close();
+        }
     }
 
     /**
-     * Returns the content values for the given product
+     * Returns the statements for single products, compiling them again if the database has
+     * been reopened since they were last compiled
      *
-     * @param profile The product whose fields will be converted to content values
-     * @return The content values matching the given profile
+     * @return The compiled statements for the open database
      */
-    private ContentValues createContent(ProductProfile profile) {
-        ContentValues content = new ContentValues();
-        content.put(COLUMN_CODE, profile.getBarcodeId());
-        content.put(COLUMN_BRAND, profile.getBrandName());
-        content.put(COLUMN_PRODUCT, profile.getProductName());
-        return content;
+    private synchronized ProductStatements statements() {
+        SQLiteDatabase database = getWritableDatabase();
+        if (statements == null || statements.getDatabase() != database) {
+            if (statements != null) {
+                statements.close();
+            }
+            statements = new ProductStatements(database, statementStatistics);
+        }
+        return statements;
+    }
+
+    /**
+     * Return the execution counts and timings of the statements for single products
+     *
+     * @return The statement statistics of this helper
+     */
+    public StatementStatistics getStatementStatistics() {
+        return statementStatistics;
+    }
+
+    /**
+     * Closes the database, releasing the compiled statements first. Only needed when the
+     * process is finished with the database; it is reopened by the next call that needs it
+     */
+    @Override
+    public synchronized void close() {
+        if (statements != null) {
+            statements.close();
+            statements = null;
+        }
+        super.close();
+    }
+
+    /**
+     * Updates the given product in the database
+     *
+     * @requires the product given is already in the database
+     * @param profile The profile to be updated
+     */
+    @Override
+    public void updateRecord(ProductProfile profile) {
+        ProductStatements statements = statements();
+        SQLiteDatabase database = statements.getDatabase();
+        database.beginTransaction();
+        try {
+            statements.update(profile);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
     }
 
     /**
@@ -101,62 +631,198 @@ public class SQLiteHelper extends SQLiteOpenHelper {
      *
      * @param profile The product to be deleted
      */
+    @Override
     public void deleteRecord(ProductProfile profile) {
-        SQLiteDatabase database = getReadableDatabase();
-        database.delete(TABLE_NAME, COLUMN_CODE + " = ?", new String[]{profile.getBarcodeId()});
-        database.close();
+        ProductStatements statements = statements();
+        SQLiteDatabase database = statements.getDatabase();
+        database.beginTransaction();
+        try {
+            statements.delete(profile.getBarcode());
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
     }
 
     /**
      * Searches the database for the given query. Searches based on product name, and brand name
      *
      * @param query Search value
-     * @return A list of products in the database that match the given query
+     * @return A list of products in the database that match the given query, most relevant first
      */
     public ArrayList<ProductProfile> search(String query) {
-        SQLiteDatabase database = getReadableDatabase();
+        return searchByRelevance(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Fetches one page of the products matching the given query, in order of brand and then
+     * barcode. Only the products on the page are read, so the cost of a page depends on the
+     * page size rather than on how many products match
+     *
+     * @param query Search value
+     * @param after The key the page starts after, from the previous page; null for the first page
+     * @param pageSize The largest number of products on the page
+     * @return The page of matching products
+     * @throws IllegalArgumentException pageSize < 1
+     */
+    @Override
+    public ProductPage searchPage(String query, ProductPage.Key after, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException();
+        }
         ArrayList<ProductProfile> products = new ArrayList<>();
-        String[] tokens = query.split(" ");
-        String plike = "";
-        String blike = "";
-        for (int i = 0; i < tokens.length - 1; i++) {
-            plike = COLUMN_PRODUCT + " LIKE \"%" + tokens[i] + "%\" OR ";
-            blike = COLUMN_BRAND + " LIKE \"%" + tokens[i] + "%\" OR ";
-        }
-        plike += COLUMN_PRODUCT + " LIKE \"%" + tokens[tokens.length - 1] + "%\"";
-        blike += COLUMN_BRAND + " LIKE \"%" + tokens[tokens.length - 1] + "%\"";
-        Cursor cursor = database.query(TABLE_NAME, null, plike + " OR " + blike, null, null, null, COLUMN_BRAND, null);
-        ProductProfile currProfile;
-        for (int index = 0; index < cursor.getCount(); index++) {
-            cursor.moveToNext();
-            currProfile = new ProductProfile(cursor.getString(0), cursor.getString(1), cursor.getString(2));
-            products.add(currProfile);
-        }
-        cursor.close();
-        database.close();
-        return products;
+        String match = ProductSearchQuery.toMatchExpression(query);
+        if (match == null) {
+            return new ProductPage(products, null);
+        }
+        ArrayList<String> arguments = new ArrayList<>();
+        arguments.add(match);
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMN_CODE + ", " + COLUMN_BRAND + ", " + COLUMN_PRODUCT
+                + " FROM " + TABLE_NAME + " WHERE rowid IN (SELECT docid FROM " + SEARCH_TABLE_NAME + " WHERE "
+                + SEARCH_TABLE_NAME + " MATCH ?)");
+        // Everything is bound, so each of the three forms of the query is prepared only once.
+        // Arguments are bound as strings, so the numbers are cast back
+        if (after != null && after.getBrand() == null) {
+            // Products without a brand sort first, so every product with one comes after
+            sql.append(" AND (" + COLUMN_BRAND + " IS NOT NULL OR rowid > CAST(? AS INTEGER))");
+            arguments.add(Long.toString(after.getBarcode()));
+        } else if (after != null) {
+            sql.append(" AND (" + COLUMN_BRAND + " > ? OR (" + COLUMN_BRAND + " = ? AND rowid > CAST(? AS INTEGER)))");
+            arguments.add(after.getBrand());
+            arguments.add(after.getBrand());
+            arguments.add(Long.toString(after.getBarcode()));
+        }
+        // One extra product is read to learn whether there is another page
+        sql.append(" ORDER BY " + COLUMN_BRAND + ", rowid LIMIT CAST(? AS INTEGER)");
+        arguments.add(Integer.toString(pageSize + 1));
+        Cursor cursor = getReadableDatabase().rawQuery(sql.toString(), arguments.toArray(new String[arguments.size()]));
+        try {
+            while (products.size() < pageSize && cursor.moveToNext()) {
+                products.add(new ProductProfile(cursor.getLong(0), cursor.getString(1), cursor.getString(2)));
+            }
+            ProductPage.Key nextKey = null;
+            if (cursor.moveToNext()) {
+                ProductProfile last = products.get(products.size() - 1);
+                nextKey = ProductPage.Key.of(last);
+            }
+            return new ProductPage(products, nextKey);
+        } finally {
+            cursor.close();
+        }
     }
 
     /**
-     * Searches the database for the given barcode
+     * Counts the products matching the given query. Only the full text index is read, not
+     * the products themselves
      *
-     * @param barcode The barcode to search for
-     * @return Return the product profile associated with the given barcode
-     * Null if not found in database
+     * @param query Search value
+     * @return The number of products whose brand or name contain every word of the query
      */
-    public ProductProfile findByBarcode(String barcode) {
+    @Override
+    public int countMatches(String query) {
+        String match = ProductSearchQuery.toMatchExpression(query);
+        if (match == null) {
+            return 0;
+        }
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT count(*) FROM " + SEARCH_TABLE_NAME + " WHERE "
+                + SEARCH_TABLE_NAME + " MATCH ?", new String[]{match});
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Finds the products whose brand or name contain every word of the given query as the
+     * start of a word, using the full text index
+     *
+     * @param query Search value
+     * @param limit The largest number of products to return
+     * @return The most relevant products matching the query, most relevant first
+     * @throws IllegalArgumentException limit < 1
+     */
+    @Override
+    public ArrayList<ProductProfile> searchByRelevance(String query, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException();
+        }
+        ArrayList<ProductProfile> products = new ArrayList<>();
+        String match = ProductSearchQuery.toMatchExpression(query);
+        if (match == null) {
+            return products;
+        }
         SQLiteDatabase database = getReadableDatabase();
-        Cursor cursor = database.query(TABLE_NAME, null, COLUMN_CODE + " LIKE " + barcode, null, null, null, null, "1");
+        Cursor cursor = database.rawQuery("SELECT docid, matchinfo(" + SEARCH_TABLE_NAME + ", '"
+                + ProductSearchQuery.MATCHINFO_FORMAT + "') FROM " + SEARCH_TABLE_NAME + " WHERE " + SEARCH_TABLE_NAME
+                + " MATCH ?", new String[]{match});
+        PriorityQueue<ProductSearchQuery.RankedMatch> best = new PriorityQueue<>();
         try {
-            if (cursor.getCount() == 1) {
-                return new ProductProfile(cursor.getString(0), cursor.getString(1), cursor.getString(2));
+            while (cursor.moveToNext()) {
+                ProductSearchQuery.offer(best, limit, cursor.getLong(0), ProductSearchQuery.relevance(cursor.getBlob(1)));
+            }
+        } finally {
+            cursor.close();
+        }
+        ProductSearchQuery.RankedMatch[] ranked = ProductSearchQuery.mostRelevantFirst(best);
+        Map<Long, ProductProfile> found = new HashMap<>();
+        for (int start = 0; start < ranked.length; start += LOOKUP_BATCH_SIZE) {
+            loadProducts(database, ranked, start, Math.min(ranked.length, start + LOOKUP_BATCH_SIZE), found);
+        }
+        for (ProductSearchQuery.RankedMatch rankedMatch : ranked) {
+            ProductProfile profile = found.get(rankedMatch.barcode);
+            if (profile != null) {
+                products.add(profile);
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Loads the products matched between the given indices in a single query. Barcodes are
+     * integers, so they are written into the query rather than bound one parameter each
+     *
+     * @param database The database
+     * @param matches The matches whose products are needed
+     * @param start The index of the first match to load
+     * @param end The index after the last match to load
+     * @param found The map the products are added to, by barcode
+     */
+    private static void loadProducts(SQLiteDatabase database, ProductSearchQuery.RankedMatch[] matches, int start, int end,
+                                     Map<Long, ProductProfile> found) {
+        StringBuilder barcodes = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            if (i > start) {
+                barcodes.append(',');
+            }
+            barcodes.append(matches[i].barcode);
+        }
+        Cursor cursor = database.query(TABLE_NAME, new String[]{COLUMN_CODE, COLUMN_BRAND, COLUMN_PRODUCT},
+                COLUMN_CODE + " IN (" + barcodes + ")", null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                found.put(cursor.getLong(0), new ProductProfile(cursor.getLong(0), cursor.getString(1), cursor.getString(2)));
             }
-            return null;
         } finally {
             cursor.close();
         }
     }
 
+    /**
+     * Searches the database for the given barcode
+     *
+     * @param barcode The GTIN to search for
+     * @return Return the product profile associated with the given barcode
+     * Null if not found in database
+     */
+    @Override
+    public ProductProfile findByBarcode(long barcode) {
+        if (!membership.mightContain(barcode)) {
+            return null;
+        }
+        return statements().find(barcode);
+    }
+
     /**
      * Determines whether a product exists in the database matching the given query
      * Based on brand name or product name
@@ -165,21 +831,41 @@ public class SQLiteHelper extends SQLiteOpenHelper {
      * @return True if the database contains the product
      * False otherwise
      */
+    @Override
     public boolean contains(ProductProfile profile) {
-        SQLiteDatabase database = getReadableDatabase();
-        Cursor cursor = database.query(TABLE_NAME, null, COLUMN_CODE + " LIKE " + profile.getBarcodeId(), null, null, null, null, "1");
-        try {
-            return cursor.getCount() == 1;
-        } finally {
-            cursor.close();
+        if (!membership.mightContain(profile.getBarcode())) {
+            return false;
         }
+        return statements().exists(profile.getBarcode());
     }
 
     /**
-     * Delete all entries in the table
+     * Delete all entries in the table. The membership index is emptied first, so a product
+     * written while the tables are being dropped is still recorded; should the drop fail, the
+     * index is loaded again
      */
+    @Override
     public void deleteAll() {
-        this.getReadableDatabase().execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
-        onCreate(this.getReadableDatabase());
+        SQLiteDatabase database = getWritableDatabase();
+        membership.clear();
+        boolean dropped = false;
+        try {
+            database.beginTransaction();
+            try {
+                database.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
+                database.execSQL("DROP TABLE IF EXISTS " + FINGERPRINT_TABLE_NAME);
+                database.execSQL("DROP TABLE IF EXISTS " + CHECKPOINT_TABLE_NAME);
+                database.execSQL("DROP TABLE IF EXISTS " + SEARCH_TABLE_NAME);
+                onCreate(database);
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            dropped = true;
+        } finally {
+            if (!dropped) {
+                loadMembership(database);
+            }
+        }
     }
 }
\ No newline at end of file
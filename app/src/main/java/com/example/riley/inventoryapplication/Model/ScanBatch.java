@@ -0,0 +1,133 @@
+package com.example.riley.inventoryapplication.Model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The items scanned in one run of batch scanning, counted by barcode, waiting to be added to
+ * the inventory counts in a single transaction once the run is over
+ *
+ * A barcode held in front of the camera is read on frame after frame, so a read of a barcode
+ * within the repeat window of the last read of the same barcode is taken to be the same item
+ * and not counted. The window runs from the latest read, so an item is counted once however
+ * long it stays in view, and the next item of the same product is counted once the first has
+ * been out of view for the window
+ *
+ * Reads arrive on the detection thread while the batch is shown and committed on the main
+ * thread, so every method is synchronized
+ *
+ * @specfield DEFAULT_REPEAT_WINDOW_MILLIS The repeat window used by default
+ */
+public class ScanBatch {
+    public static final long DEFAULT_REPEAT_WINDOW_MILLIS = 1500;
+
+    // Representation invariant
+    //  every count in counts is > 0, and its barcode is in lastRead
+    //  total is the sum of the counts
+
+    private final long repeatWindowMillis;
+    // Counted items by barcode, in the order each barcode was first counted
+    private final Map<Long, Integer> counts = new LinkedHashMap<>();
+    // The time of the latest read of each barcode, counted or not
+    private final Map<Long, Long> lastRead = new LinkedHashMap<>();
+    private int total;
+
+    /**
+     * Constructor for an empty batch
+     * @param repeatWindowMillis How long after a read of a barcode another read of it is not counted
+     * @throws IllegalArgumentException repeatWindowMillis < 0
+     */
+    public ScanBatch(long repeatWindowMillis) {
+        if (repeatWindowMillis < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.repeatWindowMillis = repeatWindowMillis;
+    }
+
+    /**
+     * Records a read of the given barcode, counting it unless the barcode was last read
+     * within the repeat window
+     * @requires the times given never go backwards
+     * @param barcode The GTIN read
+     * @param nowMillis The time of the read, in milliseconds from any fixed start
+     * @return True if the read was counted as a new item, false if it was a repeat
+     */
+    public synchronized boolean record(long barcode, long nowMillis) {
+        Long previous = lastRead.put(barcode, nowMillis);
+        if (previous != null && nowMillis - previous <= repeatWindowMillis) {
+            return false;
+        }
+        Integer count = counts.get(barcode);
+        counts.put(barcode, count == null ? 1 : count + 1);
+        total++;
+        return true;
+    }
+
+    /**
+     * Return the number of items counted with the given barcode
+     * @param barcode The GTIN to look up
+     * @return The count of the barcode, 0 if it has not been counted
+     */
+    public synchronized int getCount(long barcode) {
+        Integer count = counts.get(barcode);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Return a copy of the counts, in the order the barcodes were first counted
+     * @return The count of each barcode counted
+     */
+    public synchronized Map<Long, Integer> getCounts() {
+        return new LinkedHashMap<>(counts);
+    }
+
+    /**
+     * Return the number of items counted
+     * @return The total of every count
+     */
+    public synchronized int getTotal() {
+        return total;
+    }
+
+    /**
+     * Return the number of different barcodes counted
+     * @return The number of barcodes with a count
+     */
+    public synchronized int getProductCount() {
+        return counts.size();
+    }
+
+    /**
+     * Return whether nothing has been counted
+     * @return True if the batch is empty
+     */
+    public synchronized boolean isEmpty() {
+        return counts.isEmpty();
+    }
+
+    /**
+     * Takes counts already committed out of the batch, leaving any counted since they were
+     * copied. The times of the latest reads are kept, so an item still in view is not
+     * counted again
+     * @param committed Counts copied from this batch earlier
+     * @throws IllegalArgumentException committed == null
+     */
+    public synchronized void remove(Map<Long, Integer> committed) {
+        if (committed == null) {
+            throw new IllegalArgumentException();
+        }
+        for (Map.Entry<Long, Integer> entry : committed.entrySet()) {
+            Integer count = counts.get(entry.getKey());
+            if (count == null) {
+                continue;
+            }
+            int removed = Math.min(count, entry.getValue());
+            total -= removed;
+            if (count == removed) {
+                counts.remove(entry.getKey());
+            } else {
+                counts.put(entry.getKey(), count - removed);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.riley.inventoryapplication.Model;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how often each of the precompiled product statements runs and how long it takes,
+ * so that it is clear where database time goes. Safe to read from any thread
+ */
+public class StatementStatistics {
+
+    /**
+     * The precompiled statements that are measured
+     */
+    public enum Statement { FIND, EXISTS, INSERT, UPDATE, DELETE }
+
+    private final AtomicLongArray executions = new AtomicLongArray(Statement.values().length);
+    private final AtomicLongArray nanos = new AtomicLongArray(Statement.values().length);
+
+    /**
+     * Records one execution of the given statement
+     * @param statement The statement that ran
+     * @param elapsedNanos The time the statement took
+     */
+    void record(Statement statement, long elapsedNanos) {
+        executions.incrementAndGet(statement.ordinal());
+        nanos.addAndGet(statement.ordinal(), elapsedNanos);
+    }
+
+    /**
+     * Return the number of times the given statement has run
+     * @param statement The statement
+     * @return The number of executions of the statement
+     */
+    public long getExecutions(Statement statement) {
+        return executions.get(statement.ordinal());
+    }
+
+    /**
+     * Return the total time spent running the given statement
+     * @param statement The statement
+     * @return The time spent in the statement in nanoseconds
+     */
+    public long getNanos(Statement statement) {
+        return nanos.get(statement.ordinal());
+    }
+
+    /**
+     * Return the average time the given statement takes
+     * @param statement The statement
+     * @return The mean time per execution in nanoseconds, 0 if it has not run
+     */
+    public long getAverageNanos(Statement statement) {
+        long count = getExecutions(statement);
+        return count == 0 ? 0 : getNanos(statement) / count;
+    }
+
+    /**
+     * Return the count and average time of every statement, for logging
+     * @return A line such as "FIND 12 x 85us, EXISTS 0 x 0us, ..."
+     */
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder();
+        for (Statement statement : Statement.values()) {
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+            summary.append(String.format(Locale.US, "%s %d x %dus", statement, getExecutions(statement),
+                    getAverageNanos(statement) / 1000));
+        }
+        return summary.toString();
+    }
+}
@@ -8,10 +8,12 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.example.riley.inventoryapplication.Camera.Camera;
+import com.example.riley.inventoryapplication.Model.Gtin;
 import com.example.riley.inventoryapplication.Model.ProductProfile;
-import com.example.riley.inventoryapplication.Model.SQLiteHelper;
+import com.example.riley.inventoryapplication.Model.ProductRepository;
 import com.example.riley.inventoryapplication.R;
 
 /**
@@ -20,49 +22,64 @@ import com.example.riley.inventoryapplication.R;
  */
 public class AddEntry extends AppCompatActivity {
 
-    private SQLiteHelper sqLiteHelper;
-    private String barcode;
+    private ProductRepository repository;
+    private long barcode;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.add_menu_layout);
-        sqLiteHelper = new SQLiteHelper(getApplicationContext());
+        repository = ProductRepository.getInstance(this);
         setValues();
         setButton();
     }
 
     /**
      * Sets up the save button. Sends the user back to the camera if they were initially using the camera to update
-     * Otherwise sends them back to the hub
+     * Otherwise sends them back to the hub. The product is saved in the background and the user moved on once it
+     * has been stored
      */
     private void setButton() {
-        Button saveButton = findViewById(R.id.saveButton);
+        final Button saveButton = findViewById(R.id.saveButton);
         saveButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
                 String brand = ((EditText) findViewById(R.id.etBrand)).getText().toString();
                 String product = ((EditText) findViewById(R.id.etProduct)).getText().toString();
                 ProductProfile currProductProfile = new ProductProfile(barcode, brand, product);
-                Intent intent = new Intent();
                 if (!brand.equals("") && !product.equals("")) {
-                    if (getIntent().getExtras() != null && getIntent().getExtras().containsKey("update") && getIntent().getExtras().getBoolean("update")) {
-                        // If we are updating we want to return to the search menu
-                        sqLiteHelper.updateRecord(currProductProfile);
-                        intent = new Intent(getApplicationContext(), SearchScreen.class);
-                        finish();
-                    } else {
-                        // Otherwise we return to the main activity menu
+                    final boolean update = getIntent().getExtras() != null && getIntent().getExtras().containsKey("update") && getIntent().getExtras().getBoolean("update");
+                    // If we are updating we want to return to the search menu
+                    // Otherwise we return to the main activity menu
+                    final Intent intent = new Intent(getApplicationContext(), update ? SearchScreen.class : Hub.class);
+                    intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+                    saveButton.setEnabled(false);
+                    repository.upsert(currProductProfile, new ProductRepository.ErrorCallback<Void>() {
+                        @Override
+                        public void onResult(Void result) {
+                            if (isDestroyed()) {
+                                return;
+                            }
+                            if (update) {
+                                finish();
+                            }
+                            startActivity(intent);
+                        }
 
-                        sqLiteHelper.insertRecord(currProductProfile);
-                        intent = new Intent(getApplicationContext(), Hub.class);
-                    }
+                        @Override
+                        public void onError(Throwable error) {
+                            if (isDestroyed()) {
+                                return;
+                            }
+                            saveButton.setEnabled(true);
+                            Toast.makeText(getApplicationContext(), R.string.save_failed, Toast.LENGTH_LONG).show();
+                        }
+                    });
                 } else {
-                    intent = new Intent(getApplicationContext(), Hub.class);
+                    Intent intent = new Intent(getApplicationContext(), Hub.class);
+                    intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+                    startActivity(intent);
                 }
-                intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
-                sqLiteHelper.closeDatabase();
-                startActivity(intent);
             }
         });
     }
@@ -72,11 +89,11 @@ public class AddEntry extends AppCompatActivity {
      */
     private void setValues() {
         TextView currTextView = findViewById(R.id.textView2);
-        barcode = getIntent().getExtras().getString("barcode");
+        barcode = getIntent().getExtras().getLong("gtin", Gtin.INVALID);
         if (getIntent().getExtras().getBoolean("update")) {
             ((TextView) findViewById(R.id.etBrand)).setText(getIntent().getExtras().getString("brand"));
             ((TextView) findViewById(R.id.etProduct)).setText(getIntent().getExtras().getString("product"));
         }
-        currTextView.setText(barcode);
+        currTextView.setText(Gtin.toString(barcode));
     }
 }
\ No newline at end of file
@@ -1,262 +1,224 @@
 package com.example.riley.inventoryapplication.View;
 
 import android.Manifest;
-import android.content.Context;
 import android.content.pm.PackageManager;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.Handler;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 import android.view.View;
-import android.view.WindowManager;
 import android.widget.Button;
+import android.widget.ProgressBar;
 import android.widget.TableLayout;
-
-import com.example.riley.inventoryapplication.Model.ProductProfile;
-import com.example.riley.inventoryapplication.Model.SQLiteHelper;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.example.riley.inventoryapplication.Import.ImportJob;
+import com.example.riley.inventoryapplication.Import.ImportProgress;
+import com.example.riley.inventoryapplication.Import.ImportRunLog;
+import com.example.riley.inventoryapplication.Import.ImportStatistics;
+import com.example.riley.inventoryapplication.Import.PricebookFile;
+import com.example.riley.inventoryapplication.Model.ImportCheckpoint;
+import com.example.riley.inventoryapplication.Model.ProductRepository;
+import com.example.riley.inventoryapplication.Model.ProductStore;
+import com.example.riley.inventoryapplication.Model.RequestGroup;
 import com.example.riley.inventoryapplication.R;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
-import java.util.Stack;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.RecursiveAction;
+import java.util.Locale;
 
 /**
- * Activity designed to import the pricebook information from pricebook.txt in
- * external storage
+ * Activity designed to import the pricebook information from the newest pricebook in
+ * Downloads, which may be plain text, CSV or TSV, optionally compressed. The import runs
+ * as a job outside of this activity, so it survives the activity being recreated and can
+ * be cancelled and resumed later. While an import is running its progress is sampled at a
+ * fixed rate rather than pushed by the import
+ *
+ * @specfield PROGRESS_SAMPLE_MILLIS The time between progress updates
  */
-public class ImportPage extends AppCompatActivity {
-    private static final ForkJoinPool POOL = new ForkJoinPool();
-    private static final int EXTRA_ELEMENTS = 7;
-    private static final int SEQUENTIAL_CUTOFF = 100;
-
-    private SQLiteHelper sqLiteHelper;
+public class ImportPage extends AppCompatActivity implements ImportJob.Listener {
+    private static final String TAG = "ImportPage";
+    private static final long PROGRESS_SAMPLE_MILLIS = 500;
+    private static final String RUN_LOG_NAME = "import_runs.tsv";
+
+    private ProductStore store;
+    private ProductRepository repository;
+    // Checkpoint lookups for the idle screen, cancelled once it is left
+    private final RequestGroup idleRequests = new RequestGroup();
+    private ImportJob importJob;
+    private Button importButton;
+    private TableLayout importProgressSpinner;
+    private ProgressBar importProgressBar;
+    private TextView importProgressText;
+    private final Handler progressHandler = new Handler();
+    private ImportProgress lastProgress;
+    private final Runnable progressSampler = new Runnable() {
+        @Override
+        public void run() {
+            showProgress();
+            progressHandler.postDelayed(this, PROGRESS_SAMPLE_MILLIS);
+        }
+    };
 
     @Override
     public void onCreate(Bundle savedInstance) {
         super.onCreate(savedInstance);
         setContentView(R.layout.import_docu_layout);
-        sqLiteHelper = new SQLiteHelper(getApplicationContext());
-        setButton();
-    }
-
-    /**
-     * Initialize the import button
-     */
-    private void setButton() {
-        Button importButton = findViewById(R.id.importDocButton);
-        importButton.setOnClickListener(new ImportListener());
+        repository = ProductRepository.getInstance(this);
+        store = repository.getStore();
+        importProgressSpinner = findViewById(R.id.pbspinner);
+        importProgressBar = findViewById(R.id.importProgressBar);
+        importProgressText = findViewById(R.id.importProgressText);
+        setButtons();
     }
 
-    private class ImportListener implements View.OnClickListener {
-        private ImportListener() {
-            super();
-        }
-
-        @Override
-        public void onClick(View view) {
-            new ProgressTask().execute();
-        }
-
-        /**
-         * Get all products from the given file, storing them in the local database
-         * @requires pricebook is properly formatted
-         * @param pricebook The file containing the pricebook
-         * @return A list containing all products from the given pricebook
-         */
-        private List<String> getRawData(File pricebook) {
-            List<String> rawProducts = new ArrayList<>();
-            try {
-                Scanner scanner = new Scanner(pricebook);
-                while (scanner.hasNext()) {
-                    String line = scanner.nextLine();
-                    if (line.length() > 1 && !line.contains("Grocery") && !line.contains("$Unit") && !line.contains("Contact")) {
-                        rawProducts.add(line);
-                    }
-                }
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
-            }
-            return rawProducts;
+    @Override
+    protected void onStart() {
+        super.onStart();
+        ImportJob job = ImportJob.getCurrent();
+        if (job != null && job.getStatus() == ImportJob.Status.RUNNING) {
+            attach(job);
+        } else {
+            showIdle();
         }
+    }
 
-        /**
-         * Get the properly named pricebook from external storage
-         */
-        private File getPriceBook() {
-            if (ContextCompat.checkSelfPermission(getApplicationContext(), Manifest.permission.READ_EXTERNAL_STORAGE) ==
-                    PackageManager.PERMISSION_GRANTED) {
-                return new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS), "Pricebook.txt");
-            }
-            requestPermissions(new String[] {Manifest.permission.READ_EXTERNAL_STORAGE}, getResources().getInteger(R.integer.read_external_code));
-            return new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS), "Pricebook.txt");
+    @Override
+    protected void onStop() {
+        progressHandler.removeCallbacks(progressSampler);
+        idleRequests.cancelAll();
+        if (importJob != null) {
+            importJob.setListener(null);
         }
+        super.onStop();
+    }
 
-
-        /*
-         * Async task meant to show loading bar as well as start
-         * the recursive task meant to import data in folder
-         */
-        private class ProgressTask extends AsyncTask<Void, Void, Void> {
-            private TableLayout importProgressSpinner;
-
-            private ProgressTask() { }
-
-            @Override
-            protected void onPreExecute() {
-                super.onPreExecute();
-                importProgressSpinner = findViewById(R.id.pbspinner);
-                importProgressSpinner.setVisibility(TableLayout.VISIBLE);
-                getWindow().setFlags(WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE,
-                        WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE);
-            }
-
+    /**
+     * Initialize the import and cancel buttons
+     */
+    private void setButtons() {
+        importButton = findViewById(R.id.importDocButton);
+        importButton.setOnClickListener(new View.OnClickListener() {
             @Override
-            protected Void doInBackground(Void... p) {
-                List<String> rawProducts = getRawData(getPriceBook());
-                ImportTask task = new ImportTask(rawProducts, 0, rawProducts.size());
-                POOL.invoke(task);
-                task.join();
-                return null;
+            public void onClick(View view) {
+                attach(ImportJob.start(getPriceBook(), store,
+                        new ImportRunLog(new File(getFilesDir(), RUN_LOG_NAME))));
             }
-
+        });
+        Button cancelButton = findViewById(R.id.cancelImportButton);
+        cancelButton.setOnClickListener(new View.OnClickListener() {
             @Override
-            protected void onPostExecute(Void res) {
-                getWindow().clearFlags(WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE);
-                if (this.isCancelled()) {
-                    return;
-                }
-                if (importProgressSpinner != null) {
-                    importProgressSpinner.setVisibility(TableLayout.INVISIBLE);
+            public void onClick(View view) {
+                if (importJob != null) {
+                    importJob.cancel();
                 }
             }
+        });
+    }
 
-        }
-
-        /**
-         * Thread task for importing raw products as database entries
-         */
-        private class ImportTask extends RecursiveAction {
-            private List<String> list;
-            private int left, right;
+    /**
+     * Shows the progress of the given import and listens for it to finish
+     * @param job The running import
+     */
+    private void attach(ImportJob job) {
+        idleRequests.cancelAll();
+        importJob = job;
+        importButton.setEnabled(false);
+        importProgressSpinner.setVisibility(TableLayout.VISIBLE);
+        lastProgress = null;
+        progressHandler.removeCallbacks(progressSampler);
+        progressHandler.post(progressSampler);
+        job.setListener(this);
+    }
 
-            /**
-             * Constructor for import task
-             * @param list The list of products to be added to the database
-             * @param left The left bound in the list of the products this thread
-             *             will add to the database
-             * @param right The right bound in the list of the products this thread
-             *              will add to the database
-             */
-            private ImportTask(List<String> list, int left, int right) {
-                this.list = list;
-                this.left = left;
-                this.right = right;
-            }
+    /**
+     * Shows how far the current import has got, and its throughput since the last sample
+     */
+    private void showProgress() {
+        ImportStatistics statistics = importJob == null ? null : importJob.getStatistics();
+        if (statistics == null) {
+            return;
+        }
+        ImportProgress progress = statistics.snapshot();
+        long length = importJob.getPricebookLength();
+        if (length > 0) {
+            long read = importJob.getResumedFrom() + progress.getBytesRead();
+            importProgressBar.setProgress((int) (Math.min(read, length) * importProgressBar.getMax() / length));
+        }
+        importProgressText.setText(getString(R.string.import_progress, progress.getLinesParsed(),
+                progress.getRowsWritten(), progress.getRowsRejected(), progress.getParseRateSince(lastProgress),
+                progress.getWriteRateSince(lastProgress)));
+        lastProgress = progress;
+    }
 
-            public void compute() {
-                if (right - left <= SEQUENTIAL_CUTOFF) {
-                    for (int i = left; i < right; i++) {
-                        String currLine = list.get(i);
-                        Scanner scanner = new Scanner(currLine);
-                        String brand = "";
-                        while (!scanner.hasNextLong() && scanner.hasNext()) {
-                            brand = brand + scanner.next() + " ";
-                            if (scanner.hasNextLong()) {
-                                long next = scanner.nextLong();
-                                if (next < 100) {
-                                    brand = brand + next + " ";
-                                } else {
-                                    String barcode = constructBarcode(next);
-                                    String product = getProduct(scanner, barcode);
-                                    sqLiteHelper.insertRecord(new ProductProfile(barcode, brand, product));
-                                }
-                            }
+    /**
+     * Shows the import button, offering to resume once an interrupted earlier import is found
+     */
+    private void showIdle() {
+        progressHandler.removeCallbacks(progressSampler);
+        importJob = null;
+        importProgressSpinner.setVisibility(TableLayout.INVISIBLE);
+        importButton.setEnabled(true);
+        importButton.setText(R.string.import_file);
+        File pricebook = getPriceBookFile();
+        idleRequests.add(repository.findCheckpoint(pricebook.getAbsolutePath(),
+                new ProductRepository.Callback<ImportCheckpoint>() {
+                    @Override
+                    public void onResult(ImportCheckpoint checkpoint) {
+                        if (checkpoint != null) {
+                            importButton.setText(R.string.resume_import);
                         }
                     }
-                } else {
-                    int mid = (right + left) / 2; // In the case that the sample size is too large we may need to change this to avoid overflow
-                    ImportTask leftTask = new ImportTask(list, left, mid);
-                    ImportTask rightTask = new ImportTask(list, mid, right);
-                    leftTask.fork();
-                    rightTask.compute();
-                    leftTask.join();
-                }
-            }
-
-            /**
-             * Constructs the whole barcode from the given long
-             * @requires Long.toString(barcodeAsLong).length < 14
-             * @param barcodeAsLong The long to be converted to a full barcode
-             * @return The given barcode as a full string representing the same barcode, including
-             *         the check digit for the barcode
-             */
-            private String constructBarcode(Long barcodeAsLong) {
-                String barcodeAsString = Long.toString(barcodeAsLong);
-                if (barcodeAsString.length() < 12) {
-                    barcodeAsString = addCheckDigit(barcodeAsLong);
-                }
-                while (barcodeAsString.length() < 12) {
-                    barcodeAsString = barcodeAsString + "0";
-                }
-                return barcodeAsString;
-            }
-
-            /**
-             * Gets and adds the check digit for the barcode
-             * @param barcodeAsLong The barcode whose check digit will be found
-             * @return The barcode with the added check digit
-             */
-            private String addCheckDigit(Long barcodeAsLong) {
-                long origBarcode = barcodeAsLong;
-                int sum = 0;
-                while (barcodeAsLong > 0) {
-                    sum += (barcodeAsLong % 10) * 3;
-                    barcodeAsLong = barcodeAsLong / 10;
-                    sum += (barcodeAsLong % 10);
-                    barcodeAsLong = barcodeAsLong / 10;
-                }
-                sum = sum % 10;
-                int checkDigit = (10 - sum) % 10;
-                return "" + ((origBarcode * 10) + checkDigit);
-            }
-
-            /**
-             * Get the product name from the remainder of the line
-             * @param scanner The scanner containing the rest of the line
-             * @return The full name of the product
-             */
-            private String getProduct(Scanner scanner, String barcode) {
-                Stack<String> stack = new Stack<>();
-                while (scanner.hasNext()) {
-                    stack.push(scanner.next());
-                }
-                if (stack.size() < 8) {
-                    System.err.println(stack.size() + " : " + barcode);
-                    while (!stack.isEmpty()) {
-
-                        System.err.println(stack.pop());
-                    }
-                }
-                for (int i = 0; i < EXTRA_ELEMENTS; i++) {
-                    stack.pop();
-                }
-                String product = "";
-                while (!stack.isEmpty()) {
-                    product = stack.pop() + " " + product;
-                }
-                return product;
-            }
-
-
+                }));
+    }
 
+    @Override
+    public void onImportFinished(ImportJob job) {
+        job.setListener(null);
+        showIdle();
+        ImportStatistics statistics = job.getStatistics();
+        if (job.getStatus() == ImportJob.Status.FAILED || statistics == null) {
+            Toast.makeText(getApplicationContext(), R.string.import_failed, Toast.LENGTH_LONG).show();
+            return;
+        }
+        Log.i(TAG, String.format(Locale.US, "Import %s after resuming from byte %d. Read %d bytes in %d ms, parsed %d "
+                        + "products at %.0f/s per worker, applied them at %.0f/s: %d inserted, %d updated, "
+                        + "%d unchanged, %d deleted, %d rejected, %d ms in total",
+                job.getStatus(), job.getResumedFrom(), statistics.getBytesRead(), statistics.getReadNanos() / 1000000,
+                statistics.getProductsParsed(), statistics.getParseRate(), statistics.getWriteRate(),
+                statistics.getRowsInserted(), statistics.getRowsUpdated(), statistics.getRowsUnchanged(),
+                statistics.getRowsDeleted(), statistics.getRowsRejected(), statistics.getElapsedNanos() / 1000000));
+        if (job.getStatus() == ImportJob.Status.CANCELLED) {
+            Toast.makeText(getApplicationContext(), R.string.import_cancelled, Toast.LENGTH_LONG).show();
+        } else {
+            Toast.makeText(getApplicationContext(), getString(R.string.import_summary,
+                    statistics.getRowsInserted(), statistics.getRowsUpdated(),
+                    statistics.getRowsDeleted(), statistics.getRowsUnchanged()), Toast.LENGTH_LONG).show();
         }
     }
 
+    /**
+     * Get the properly named pricebook from external storage, asking for permission to read
+     * it if needed
+     */
+    private File getPriceBook() {
+        if (ContextCompat.checkSelfPermission(getApplicationContext(), Manifest.permission.READ_EXTERNAL_STORAGE) !=
+                PackageManager.PERMISSION_GRANTED) {
+            requestPermissions(new String[] {Manifest.permission.READ_EXTERNAL_STORAGE}, getResources().getInteger(R.integer.read_external_code));
+        }
+        return getPriceBookFile();
+    }
 
-}
\ No newline at end of file
+    /**
+     * Return the location of the pricebook in external storage: the newest pricebook in
+     * Downloads in any supported format, or Pricebook.txt if there is none
+     * @return The pricebook file
+     */
+    private File getPriceBookFile() {
+        File downloads = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+        File pricebook = PricebookFile.find(downloads);
+        return pricebook == null ? new File(downloads, "Pricebook.txt") : pricebook;
+    }
+}
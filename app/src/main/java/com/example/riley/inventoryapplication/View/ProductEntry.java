@@ -7,11 +7,14 @@ import android.support.v7.app.AppCompatActivity;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.example.riley.inventoryapplication.Model.Gtin;
+import com.example.riley.inventoryapplication.Model.ProductRepository;
+import com.example.riley.inventoryapplication.Model.ProductRequest;
 import com.example.riley.inventoryapplication.R;
 
 /**
  * Activity for viewing a product profile visually. Contains the product name, brand name,
- * and a scannable barcode for the product
+ * how many of the product have been counted, and a scannable barcode for the product
  *
  * @specfield BARCODE_SCALE_FACTOR Amount to scale the entire barcode's size by
  * @specfield BARCODE_MIN_WIDTH_PX The minimum number of pixels needed to represent a barcode
@@ -31,6 +34,7 @@ public class ProductEntry extends AppCompatActivity {
     private String barcode;
     private String brand;
     private String product;
+    private ProductRequest<Long> countRequest;
 
     @Override
     public void onCreate(Bundle savedInstance) {
@@ -40,6 +44,32 @@ public class ProductEntry extends AppCompatActivity {
         if (barcode.length() >= 12) {
             createBarcode();
         }
+        showCount();
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (countRequest != null) {
+            countRequest.cancel();
+        }
+        super.onDestroy();
+    }
+
+    /**
+     * Looks up how many of the product have been counted, and shows it once found
+     */
+    private void showCount() {
+        long gtin = getIntent().getLongExtra("gtin", Gtin.INVALID);
+        if (gtin == Gtin.INVALID) {
+            return;
+        }
+        final TextView countTextView = findViewById(R.id.tvCount);
+        countRequest = ProductRepository.getInstance(this).findCount(gtin, new ProductRepository.Callback<Long>() {
+            @Override
+            public void onResult(Long count) {
+                countTextView.setText(String.valueOf(count));
+            }
+        });
     }
 
     /**
@@ -0,0 +1,207 @@
+package com.example.riley.inventoryapplication.View;
+
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.example.riley.inventoryapplication.Model.ProductProfile;
+import com.example.riley.inventoryapplication.R;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows search results in a RecyclerView. Only the rows on screen are inflated, and a row
+ * scrolled off screen is rebound to another product rather than inflated again. Each row's
+ * listeners are set once, when it is created, and look up the product it is bound to
+ *
+ * Changes to single products are applied as a Patch, worked out off the main thread, so
+ * only the rows that changed are rebound
+ */
+public class ProductListAdapter extends RecyclerView.Adapter<ProductListAdapter.ProductViewHolder> {
+
+    /**
+     * Callback for taps on the rows of the list
+     */
+    public interface OnProductClickListener {
+        /**
+         * Called when a row is tapped
+         * @param profile The product of the row
+         */
+        void onProductClick(ProductProfile profile);
+
+        /**
+         * Called when a row is held down
+         * @param profile The product of the row
+         */
+        void onProductLongClick(ProductProfile profile);
+    }
+
+    private final List<ProductProfile> products = new ArrayList<>();
+    private final OnProductClickListener listener;
+    // Bumped by every change to the products, so a patch worked out from an older list is not applied
+    private int version;
+
+    /**
+     * Constructor for an empty list
+     * @param listener Told of taps on the rows
+     */
+    public ProductListAdapter(OnProductClickListener listener) {
+        this.listener = listener;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Replaces the products shown
+     * @param replacement The products to show, in order
+     */
+    public void setProducts(List<ProductProfile> replacement) {
+        products.clear();
+        products.addAll(replacement);
+        version++;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Adds products to the end of the list, such as the next page of results
+     * @param more The products to add, in order
+     */
+    public void appendProducts(List<ProductProfile> more) {
+        int start = products.size();
+        products.addAll(more);
+        version++;
+        notifyItemRangeInserted(start, more.size());
+    }
+
+    /**
+     * Return a copy of the products shown, which may be used on any thread
+     * @return The products shown, in order
+     */
+    public List<ProductProfile> getProducts() {
+        return new ArrayList<>(products);
+    }
+
+    /**
+     * Return the version of the products shown, which changes whenever they do
+     * @return The current version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Replaces the products shown with a patched list, rebinding only the rows that changed
+     * @requires patch was worked out from the products of the current version
+     * @param patch The patch to apply
+     */
+    public void applyPatch(Patch patch) {
+        products.clear();
+        products.addAll(patch.products);
+        version++;
+        patch.diff.dispatchUpdatesTo(this);
+    }
+
+    @Override
+    public ProductViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.inflate_view, parent, false);
+        return new ProductViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(ProductViewHolder holder, int position) {
+        holder.productName.setText(products.get(position).getProductName());
+    }
+
+    @Override
+    public int getItemCount() {
+        return products.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return products.get(position).getBarcode();
+    }
+
+    /**
+     * A row of the list, which keeps its views so that binding it to another product only
+     * sets their text
+     */
+    class ProductViewHolder extends RecyclerView.ViewHolder {
+        private final TextView productName;
+
+        /**
+         * Constructor for a row
+         * @param view The inflated row
+         */
+        ProductViewHolder(View view) {
+            super(view);
+            productName = view.findViewById(R.id.productIdentifier);
+            View row = view.findViewById(R.id.inflateParent);
+            row.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    int position = getAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION) {
+                        listener.onProductClick(products.get(position));
+                    }
+                }
+            });
+            row.setOnLongClickListener(new View.OnLongClickListener() {
+                @Override
+                public boolean onLongClick(View v) {
+                    int position = getAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION) {
+                        listener.onProductLongClick(products.get(position));
+                    }
+                    return true;
+                }
+            });
+        }
+    }
+
+    /**
+     * A new list of products along with how it differs from an old one. Working it out takes
+     * time in proportion to the length of the lists, so it should be done off the main thread
+     */
+    public static class Patch {
+        private final List<ProductProfile> products;
+        private final DiffUtil.DiffResult diff;
+
+        /**
+         * Works out how the products shown must change to become the new list
+         * @param oldProducts The products shown
+         * @param newProducts The products to show instead
+         */
+        public Patch(final List<ProductProfile> oldProducts, final List<ProductProfile> newProducts) {
+            this.products = newProducts;
+            // Lists are in brand order, so nothing moves except by being removed and inserted
+            this.diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                @Override
+                public int getOldListSize() {
+                    return oldProducts.size();
+                }
+
+                @Override
+                public int getNewListSize() {
+                    return newProducts.size();
+                }
+
+                @Override
+                public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                    return oldProducts.get(oldPosition).getBarcode() == newProducts.get(newPosition).getBarcode();
+                }
+
+                @Override
+                public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                    // Only the product name is shown
+                    return TextUtils.equals(oldProducts.get(oldPosition).getProductName(),
+                            newProducts.get(newPosition).getProductName());
+                }
+            }, false);
+        }
+    }
+}
@@ -4,64 +4,119 @@ package com.example.riley.inventoryapplication.View;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
-import android.view.LayoutInflater;
-import android.view.View;
-import android.widget.Button;
-import android.widget.LinearLayout;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.widget.SearchView;
 import android.widget.TextView;
 
+import com.example.riley.inventoryapplication.Model.Gtin;
+import com.example.riley.inventoryapplication.Model.ProductChange;
+import com.example.riley.inventoryapplication.Model.ProductPage;
 import com.example.riley.inventoryapplication.Model.ProductProfile;
-import com.example.riley.inventoryapplication.Model.SQLiteHelper;
+import com.example.riley.inventoryapplication.Model.ProductRepository;
+import com.example.riley.inventoryapplication.Model.ProductRequest;
+import com.example.riley.inventoryapplication.Model.ProductStoreListener;
+import com.example.riley.inventoryapplication.Model.RequestGroup;
+import com.example.riley.inventoryapplication.Model.ResultWindow;
 import com.example.riley.inventoryapplication.R;
 
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Callable;
 
 public class SearchScreen extends AppCompatActivity {
+    private static final int PAGE_SIZE = 100;
+    // How close to the end of the loaded products the list may scroll before the next page is fetched
+    private static final int LOAD_AHEAD = 30;
+    // How long typing must pause before the query is sent to the database
+    private static final long SEARCH_DELAY_MILLIS = 250;
 
-    private SQLiteHelper sqLiteHelper;
+    private ProductRepository repository;
+    // Requests for the current query, cancelled when the query changes or the screen closes
+    private final RequestGroup searchRequests = new RequestGroup();
+    private ProductRequest<ProductPage> pageRequest;
+    private final Handler searchHandler = new Handler();
+    private String typedQuery;
+    // Searches for the text last typed, once typing pauses
+    private final Runnable delayedSearch = new Runnable() {
+        @Override
+        public void run() {
+            search(typedQuery);
+        }
+    };
     private AlertDialog.Builder alertDialogBuilder;
+    // The query being searched or shown, null while the typed text has yet to be searched
     private String currQuery;
     private String updateRowID;
     private TextView numberOfProducts;
-    private List<ProductProfile> productsFound = new ArrayList<>();
-    private Queue<ProductProfile> currentProducts = new LinkedBlockingQueue<>();
-    private int page = 0;
+    private int productCount;
+    // The last page loaded, null while a page is loading
+    private ProductPage currentPage;
+    private int pagesLoaded;
+    private LinearLayoutManager layoutManager;
+    private ProductListAdapter adapter;
+    // Keeps the products shown up to date as they are written, here or on any other screen
+    private final ProductStoreListener storeListener = new ProductStoreListener() {
+        @Override
+        public void onProductChanged(ProductChange change) {
+            patchResults(change);
+        }
+
+        @Override
+        public void onProductsReplaced() {
+            refreshSearch();
+        }
+    };
 
     @Override
     public void onCreate(Bundle savedInstance) {
         super.onCreate(savedInstance);
         setContentView(R.layout.search_screen_layout);
-        sqLiteHelper = new SQLiteHelper(getApplicationContext());
+        repository = ProductRepository.getInstance(this);
         alertDialogBuilder= new AlertDialog.Builder(SearchScreen.this);
         numberOfProducts = findViewById(R.id.products_found);
-        Button left = findViewById(R.id.left_page_button);
-        left.setOnClickListener(new View.OnClickListener() {
+        setupProductList();
+        setupSearchListener();
+        repository.addListener(storeListener);
+    }
+
+    // Setup the list of products, which fetches the next page as the user scrolls towards its end
+    private void setupProductList() {
+        RecyclerView productList = findViewById(R.id.product_list);
+        layoutManager = new LinearLayoutManager(this);
+        productList.setLayoutManager(layoutManager);
+        productList.setHasFixedSize(true);
+        adapter = new ProductListAdapter(new ProductListAdapter.OnProductClickListener() {
             @Override
-            public void onClick(View v) {
-                if (page > 0) {
-                    page--;
-                    displaySearch();
-                }
+            public void onProductClick(ProductProfile profile) {
+                Intent intent = new Intent(getApplicationContext(), ProductEntry.class);
+                putInto(intent, profile);
+                startActivity(intent);
+            }
+
+            @Override
+            public void onProductLongClick(ProductProfile profile) {
+                showOptions(profile);
             }
         });
-        Button right = findViewById(R.id.right_page_button);
-        right.setOnClickListener(new View.OnClickListener() {
+        productList.setAdapter(adapter);
+        productList.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
-            public void onClick(View v) {
-                if (page * 100 + 100 < productsFound.size()) {
-                    page++;
-                    displaySearch();
-                }
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                loadMoreIfNeeded();
             }
         });
-        setupSearchListener();
+    }
+
+    @Override
+    protected void onDestroy() {
+        repository.removeListener(storeListener);
+        searchHandler.removeCallbacks(delayedSearch);
+        searchRequests.cancelAll();
+        super.onDestroy();
     }
 
     // Setup the search bar
@@ -71,137 +126,202 @@ public class SearchScreen extends AppCompatActivity {
             @Override
             public boolean onQueryTextSubmit(String query) {
                 currSearchView.clearFocus();
-                page = 0;
-                currQuery = query;
-                productsFound = sqLiteHelper.search(query);
-                productsFound.size();
-                setNumber();
-                displaySearch();
+                search(query);
                 return false;
             }
             @Override
             public boolean onQueryTextChange(String s) {
-                return false;
+                searchHandler.removeCallbacks(delayedSearch);
+                typedQuery = s;
+                if (!refineSearch(s)) {
+                    // Whatever is still loading is for text the user has already changed
+                    searchRequests.cancelAll();
+                    currQuery = null;
+                    currentPage = null;
+                    searchHandler.postDelayed(delayedSearch, SEARCH_DELAY_MILLIS);
+                }
+                return true;
             }
         });
     }
 
-    // Display the products that match the string or contain the string in the product or brand name
-    private void displaySearch() {
-        ((LinearLayout) findViewById(R.id.leftoverLayout)).removeAllViews();
-        currentProducts.clear();
-        int last = page * 100 + 100;
-        if (last > productsFound.size()) {
-            last = productsFound.size();
+    // Search for the given query now, unless it is already being searched or shown
+    private void search(String query) {
+        searchHandler.removeCallbacks(delayedSearch);
+        if (query.equals(currQuery) || refineSearch(query)) {
+            return;
         }
-        System.err.println(page * 100 + " : " + last);
-        List<ProductProfile> currPage = productsFound.subList(page * 100, last);
-        currentProducts.addAll(currPage);
-        System.err.println(currentProducts.size());
-        runOnUiThread(new ViewCreator());
+        currQuery = query;
+        startSearch();
     }
 
-    // Thread for creating the inflatable views for each product entry
-    private class ViewCreator implements Runnable {
-        public void run() {
-            LinearLayout inflateParentView;
-            ProductProfile currProductProfile;
-            while (!currentProducts.isEmpty()) {
-                currProductProfile = currentProducts.remove();
-                final ViewHolder someViewHolder = new ViewHolder();
-                final View view = LayoutInflater.from(getApplicationContext()).inflate(R.layout.inflate_view, null);
-                setViewHolder(someViewHolder, view, currProductProfile);
-                inflateParentView = view.findViewById(R.id.inflateParent);
-                setupInflateListeners(view, someViewHolder, inflateParentView);
-            }
+    // Show the results of a query extending the one shown by filtering the products on screen, when they
+    // are every match of the query shown. Return whether the results could be found this way
+    private boolean refineSearch(String query) {
+        if (pagesLoaded != 1 || currentPage == null) {
+            return false;
         }
+        ProductPage narrowed = currentPage.narrow(currQuery, query);
+        if (narrowed == null) {
+            return false;
+        }
+        searchRequests.cancelAll();
+        currQuery = query;
+        currentPage = narrowed;
+        productCount = narrowed.getProducts().size();
+        setNumber();
+        adapter.setProducts(narrowed.getProducts());
+        return true;
     }
 
-    // Object to hold the information for the product. Information used in constructing the correct product entry page
-    private class ViewHolder {
-        TextView textView;
-        String barcode;
-        String brand;
-        String product;
+    // Apply a change to one product to the products loaded, working out which rows change in the background,
+    // then recount the matches
+    private void patchResults(final ProductChange change) {
+        if (currQuery == null || pagesLoaded == 0) {
+            // Nothing is loaded for the query yet, and the search under way will read the change
+            return;
+        }
+        final String query = currQuery;
+        final boolean complete = currentPage != null && !currentPage.hasNext();
+        final List<ProductProfile> loaded = adapter.getProducts();
+        final int version = adapter.getVersion();
+        searchRequests.add(repository.run(new Callable<ProductListAdapter.Patch>() {
+            @Override
+            public ProductListAdapter.Patch call() {
+                return new ProductListAdapter.Patch(loaded, ResultWindow.patch(loaded, complete, query, change));
+            }
+        }, new ProductRepository.Callback<ProductListAdapter.Patch>() {
+            @Override
+            public void onResult(ProductListAdapter.Patch patch) {
+                if (adapter.getVersion() != version) {
+                    // Another page arrived or another change was applied meanwhile, so patch the new list
+                    patchResults(change);
+                    return;
+                }
+                adapter.applyPatch(patch);
+                countProducts();
+            }
+        }));
     }
 
-    // Set each view holder to the given information from the product profile removed from the queue of all product profiles
-    private void setViewHolder(ViewHolder someViewHolder, View view, ProductProfile currProductProfile) {
-        someViewHolder.barcode = currProductProfile.getBarcodeId();
-        someViewHolder.brand = currProductProfile.getBrandName();
-        someViewHolder.product = currProductProfile.getProductName();
-        someViewHolder.textView = view.findViewById(R.id.productIdentifier);
-        someViewHolder.textView.setText(someViewHolder.product);
-        view.setTag(currProductProfile.getBarcodeId());
+    // Search for the query shown again, after a change to more products than are worth patching one by one
+    private void refreshSearch() {
+        if (currQuery != null) {
+            String query = currQuery;
+            currQuery = null;
+            search(query);
+        }
     }
 
-    // Set the functionality of each view holder. To change color on whether the user is touching the entry. Also
-    // sets up the update and delete alert
-    private void setupInflateListeners(final View currView, final ViewHolder someViewHolder, LinearLayout inflateParentView) {
+    // Count the products matching the current query and show its first page
+    private void startSearch() {
+        searchRequests.cancelAll();
+        pagesLoaded = 0;
+        countProducts();
+        loadPage(null);
+    }
 
-        final CharSequence[] options = {"Update", "Delete"};
-        inflateParentView.setOnLongClickListener(new View.OnLongClickListener() {
+    // Count the products matching the query in the background, then show the count
+    private void countProducts() {
+        if (currQuery == null) {
+            return;
+        }
+        searchRequests.add(repository.countMatches(currQuery, new ProductRepository.Callback<Integer>() {
             @Override
-            public boolean onLongClick(View view) {
-                alertDialogBuilder.setItems(options, new DialogInterface.OnClickListener() {
+            public void onResult(Integer count) {
+                productCount = count;
+                setNumber();
+            }
+        }));
+    }
+
+    // Fetch the page of products matching the query after the given key in the background, then show it
+    // after the products already loaded
+    private void loadPage(final ProductPage.Key after) {
+        if (pageRequest != null) {
+            pageRequest.cancel();
+        }
+        if (currQuery == null) {
+            return;
+        }
+        // No page is current until this one arrives, so scrolling does not fetch it twice
+        currentPage = null;
+        pageRequest = searchRequests.add(repository.searchPage(currQuery, after, PAGE_SIZE,
+                new ProductRepository.Callback<ProductPage>() {
                     @Override
-                    public void onClick(DialogInterface dialogInterface, int choice) {
-                        if (choice == 0) {
-                            updateRowID = currView.getTag().toString();
-                            update(someViewHolder);
+                    public void onResult(ProductPage result) {
+                        currentPage = result;
+                        pagesLoaded++;
+                        if (after == null) {
+                            adapter.setProducts(result.getProducts());
+                            layoutManager.scrollToPosition(0);
                         } else {
-                            AlertDialog.Builder deleteDialog = new AlertDialog.Builder(SearchScreen.this);
-                            deleteDialog.setTitle("Delete Product Entry?");
-                            deleteDialog.setPositiveButton("Okay", new DialogInterface.OnClickListener() {
-                                @Override
-                                public void onClick(DialogInterface dialogInterface, int i) {
-                                    ProductProfile profile = new ProductProfile(someViewHolder.barcode, someViewHolder.brand, someViewHolder.product);
-                                    sqLiteHelper.deleteRecord(profile);
-                                    setNumber();
-                                    productsFound = sqLiteHelper.search(currQuery);
-                                    displaySearch();
-                                }
-                            });
-
-                            deleteDialog.setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
-                                @Override
-                                public void onClick(DialogInterface dialogInterface, int i) {
-                                }
-                            });
-                            deleteDialog.show();
+                            adapter.appendProducts(result.getProducts());
                         }
+                        loadMoreIfNeeded();
                     }
-                });
-                AlertDialog alertDialog = alertDialogBuilder.create();
-                alertDialog.show();
-                return true;
-            }
-        });
+                }));
+    }
+
+    // Fetch the next page once the list is scrolled close to the end of the products loaded
+    private void loadMoreIfNeeded() {
+        if (currentPage != null && currentPage.hasNext()
+                && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - LOAD_AHEAD) {
+            loadPage(currentPage.getNextKey());
+        }
+    }
 
-        inflateParentView.setOnClickListener(new View.OnClickListener() {
+    // Offer to update or delete the given product
+    private void showOptions(final ProductProfile profile) {
+        final CharSequence[] options = {"Update", "Delete"};
+        alertDialogBuilder.setItems(options, new DialogInterface.OnClickListener() {
             @Override
-            public void onClick(View view) {
-                Intent intent = new Intent(getApplicationContext(), ProductEntry.class);
-                putInto(intent, someViewHolder);
-                startActivity(intent);
+            public void onClick(DialogInterface dialogInterface, int choice) {
+                if (choice == 0) {
+                    updateRowID = profile.getBarcodeId();
+                    update(profile);
+                } else {
+                    AlertDialog.Builder deleteDialog = new AlertDialog.Builder(SearchScreen.this);
+                    deleteDialog.setTitle("Delete Product Entry?");
+                    deleteDialog.setPositiveButton("Okay", new DialogInterface.OnClickListener() {
+                        @Override
+                        public void onClick(DialogInterface dialogInterface, int i) {
+                            delete(profile);
+                        }
+                    });
+
+                    deleteDialog.setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+                        @Override
+                        public void onClick(DialogInterface dialogInterface, int i) {
+                        }
+                    });
+                    deleteDialog.show();
+                }
             }
         });
-        LinearLayout linearView = ((LinearLayout) findViewById(R.id.leftoverLayout));
-        linearView.addView(currView);
+        AlertDialog alertDialog = alertDialogBuilder.create();
+        alertDialog.show();
+    }
+
+    // Delete the given product in the background; the store listener then takes it out of the list
+    private void delete(ProductProfile profile) {
+        // Not part of the search requests, so a new search cannot cancel the delete
+        repository.delete(profile, null);
     }
 
     // Set up the intent for the product entry or update page
-    private void putInto(Intent intent, ViewHolder someViewHolder) {
+    private void putInto(Intent intent, ProductProfile profile) {
         intent.putExtra("ID", updateRowID);
-        intent.putExtra("barcode", someViewHolder.barcode);
-        intent.putExtra("brand", someViewHolder.brand);
-        intent.putExtra("product", someViewHolder.product);
+        intent.putExtra("barcode", Gtin.toString(profile.getBarcode()));
+        intent.putExtra("gtin", profile.getBarcode());
+        intent.putExtra("brand", profile.getBrandName());
+        intent.putExtra("product", profile.getProductName());
     }
 
     // Send the user to the update page for the requested product entry
-    private void update(ViewHolder someViewHolder) {
+    private void update(ProductProfile profile) {
         Intent intent = new Intent(getApplicationContext(), AddEntry.class);
-        putInto(intent, someViewHolder);
+        putInto(intent, profile);
         intent.putExtra("update", true);
         startActivity(intent);
     }
@@ -215,10 +335,10 @@ public class SearchScreen extends AppCompatActivity {
     }
 
     private void setNumber() {
-        if (productsFound.size() == 1) {
-            numberOfProducts.setText(productsFound.size() + " Product Found");
+        if (productCount == 1) {
+            numberOfProducts.setText(productCount + " Product Found");
         } else {
-            numberOfProducts.setText(productsFound.size() + " Products Found");
+            numberOfProducts.setText(productCount + " Products Found");
         }
     }
 }
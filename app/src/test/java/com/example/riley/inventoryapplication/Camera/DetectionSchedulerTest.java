@@ -0,0 +1,61 @@
+package com.example.riley.inventoryapplication.Camera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a busy detector is handed only the newest frame and that every buffer comes back
+ */
+public class DetectionSchedulerTest {
+
+    @Test
+    public void framesWaitingBehindABusyDetectorAreReplaced() throws InterruptedException {
+        FrameBufferPool pool = new FrameBufferPool(2, 2, 4);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Byte> seen = new ArrayList<>();
+        DetectionScheduler scheduler = new DetectionScheduler(pool, new DetectionScheduler.FrameProcessor() {
+            @Override
+            public void process(FrameBuffer frame) {
+                synchronized (seen) {
+                    seen.add(frame.getData().get(0));
+                }
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        scheduler.submit(frame(pool, 1));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        scheduler.submit(frame(pool, 2));
+        scheduler.submit(frame(pool, 3));
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getProcessedFrames() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        scheduler.stop();
+        synchronized (seen) {
+            assertEquals(2, seen.size());
+            assertEquals(1, (int) seen.get(0));
+            assertEquals(3, (int) seen.get(1));
+        }
+        assertEquals(1, scheduler.getDroppedFrames());
+        assertEquals(4, pool.available());
+    }
+
+    private static FrameBuffer frame(FrameBufferPool pool, int value) {
+        FrameBuffer frame = pool.acquire();
+        frame.getData().put(0, (byte) value);
+        return frame;
+    }
+}
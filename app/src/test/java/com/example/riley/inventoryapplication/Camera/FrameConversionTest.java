@@ -0,0 +1,81 @@
+package com.example.riley.inventoryapplication.Camera;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that camera planes are packed correctly into pooled frame buffers
+ */
+public class FrameConversionTest {
+
+    @Test
+    public void rowPaddingIsSkipped() {
+        // Two rows of three pixels, padded to four bytes, with the last row unpadded
+        ByteBuffer plane = ByteBuffer.wrap(new byte[]{1, 2, 3, 0, 4, 5, 6});
+        FrameBuffer frame = new FrameBuffer(6);
+        Luminance.copy(plane, 4, 1, 0, 0, 3, 2, 1, frame);
+        assertEquals(0, frame.getData().position());
+        assertEquals(3, frame.getWidth());
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6}, contents(frame, 6));
+    }
+
+    @Test
+    public void spacedPixelsArePacked() {
+        ByteBuffer plane = ByteBuffer.wrap(new byte[]{1, 9, 2, 9, 3, 9, 4, 9, 5, 9, 6});
+        FrameBuffer frame = new FrameBuffer(6);
+        Luminance.copy(plane, 6, 2, 0, 0, 3, 2, 1, frame);
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6}, contents(frame, 6));
+    }
+
+    @Test
+    public void regionIsCroppedAndScaledDown() {
+        // Four rows of four pixels numbered from 0, keeping every second pixel of the bottom half
+        byte[] pixels = new byte[16];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) i;
+        }
+        FrameBuffer frame = new FrameBuffer(16);
+        Luminance.copy(ByteBuffer.wrap(pixels), 4, 1, 0, 2, 4, 2, 2, frame);
+        assertEquals(2, frame.getWidth());
+        assertEquals(1, frame.getHeight());
+        assertEquals(2, frame.getStep());
+        assertArrayEquals(new byte[]{8, 10}, contents(frame, 2));
+        assertEquals((byte) 0x80, frame.getData().get(2));
+    }
+
+    @Test
+    public void poolHandsOutEachBufferOnce() {
+        FrameBufferPool pool = new FrameBufferPool(4, 2, 2);
+        FrameBuffer first = pool.acquire();
+        FrameBuffer second = pool.acquire();
+        assertNotSame(first, second);
+        assertNull(pool.acquire());
+        pool.release(first);
+        assertSame(first, pool.acquire());
+    }
+
+    @Test
+    public void slowDetectionScalesFramesDown() {
+        DownscaleController downscale = new DownscaleController(100);
+        downscale.record(1, 300);
+        assertEquals(2, downscale.getStep());
+        // Predicted at a quarter of the time, then measured well under the target
+        for (int i = 0; i < 20; i++) {
+            downscale.record(2, 10);
+        }
+        assertEquals(1, downscale.getStep());
+        downscale.record(2, 1000);
+        assertEquals(1, downscale.getStep());
+    }
+
+    private static byte[] contents(FrameBuffer frame, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = frame.getData().get(i);
+        }
+        return bytes;
+    }
+}
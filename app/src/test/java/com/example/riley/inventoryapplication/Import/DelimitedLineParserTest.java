@@ -0,0 +1,42 @@
+package com.example.riley.inventoryapplication.Import;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that delimited exports are mapped onto records through their header
+ */
+public class DelimitedLineParserTest {
+    private static final String HEADER = "Pack,Description,Brand,Item#,Price";
+
+    @Test
+    public void columnsAreFoundByHeaderName() throws IOException {
+        PricebookLineParser parser = DelimitedFormat.fromHeader(',', HEADER, ColumnMapping.DEFAULT).newLineParser();
+        PricebookRecord record = new PricebookRecord();
+        char[] line = "12, \"MAC \"\"N\"\" CHEESE, SHELLS\" ,ANNIES,013562000043,1.45".toCharArray();
+        assertTrue(parser.parseLine(line, 0, line.length, record));
+        assertEquals("ANNIES", record.getBrand());
+        assertEquals(13562000043L, record.getBarcode());
+        assertEquals("MAC \"N\" CHEESE, SHELLS", record.getProduct());
+        assertEquals("12 1.45", record.getTrailingColumns());
+    }
+
+    @Test
+    public void linesWithoutBarcodeAreSkipped() throws IOException {
+        PricebookLineParser parser = DelimitedFormat.fromHeader('\t', HEADER.replace(',', '\t'),
+                ColumnMapping.DEFAULT).newLineParser();
+        PricebookRecord record = new PricebookRecord();
+        char[] header = HEADER.replace(',', '\t').toCharArray();
+        char[] shortLine = "12\tOATS\tBOBS".toCharArray();
+        assertFalse(parser.parseLine(header, 0, header.length, record));
+        assertFalse(parser.parseLine(shortLine, 0, shortLine.length, record));
+    }
+
+    @Test(expected = IOException.class)
+    public void missingColumnIsRejected() throws IOException {
+        DelimitedFormat.fromHeader(',', "Brand,UPC,Description", ColumnMapping.DEFAULT);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.riley.inventoryapplication.Import;
+
+import com.example.riley.inventoryapplication.Model.Gtin;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.Stack;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the streaming tokenizer produces the same products as the Scanner based
+ * parser it replaced
+ */
+public class PricebookTokenizerTest {
+    private static final String[] SAMPLE_LINES = {
+            "Grocery Pricebook Week 32",
+            "Brand Item# Description Pack Size $Unit $Case Retail Margin",
+            "BOBS RED MILL 3997800105 OLD FASHIONED OATS 4 32 OZ 4.29 17.16 6.49 34%",
+            "ODWALLA 7831500123 GREEN MACHINE JUICE 6 15.2 OZ 2.99 17.94 4.29 30%",
+            "KIND 6025200 DARK CHOC NUTS SEA SALT 12 1.4 OZ 1.25 15.00 1.99 37%",
+            "365 EVERYDAY 8 99482401234 ORGANIC PEANUT BUTTER 12 16 OZ 3.10 37.20 4.99 38%",
+            "SEVENTH GEN -2 73227001 FREE CLEAR DISH LIQUID 6 25 OZ 2.75 16.50 3.99 31%",
+            "ANNIES 013562000043 MAC CHEESE SHELLS 12 6 OZ 1.45 17.40 2.29 37%",
+            "DR BRONNER'S 1,234 PURE CASTILE SOAP 12 8 OZ 5.10 61.20 7.99 36%",
+            "CLIF\tBAR   72225200 CHOC CHIP  12 2.4 OZ 0.99 11.88 1.49 34%",
+            "   ",
+            "x",
+            "Contact your sales rep for details",
+            "1234567 LEADING NUMBER LINE 1 2 3 4 5 6 7",
+            "SHORT LINE 1234567 ONLY 1 2 3",
+            "BRAND 7 12345678 BACK TO BACK NUMBERS 1 2 3 4 5 6 7",
+            "NO BARCODE AT ALL ON THIS LINE",
+            "HUGE 99999999999999999999 CODE 4433221 PRODUCT A 1 2 3 4 5 6 7",
+            "EXACT 4455667 1 2 3 4 5 6 7",
+    };
+
+    @Test
+    public void streamedProductsMatchScannerParser() throws IOException {
+        StringBuilder file = new StringBuilder();
+        for (int i = 0; i < SAMPLE_LINES.length; i++) {
+            file.append(SAMPLE_LINES[i]).append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        List<String> expected = new ArrayList<>();
+        for (String line : SAMPLE_LINES) {
+            expected.addAll(legacyParse(line));
+        }
+
+        assertEquals(8, expected.size());
+
+        PricebookTokenizer tokenizer = new PricebookTokenizer(new StringReader(file.toString()));
+        PricebookRecord record = new PricebookRecord();
+        List<String> actual = new ArrayList<>();
+        while (tokenizer.next(record)) {
+            actual.add(describe(record.getBarcode(), record.getBrand(), record.getProduct()));
+        }
+        assertEquals(expected, actual);
+        assertEquals(SAMPLE_LINES.length, tokenizer.getLinesRead());
+    }
+
+    @Test
+    public void lastLineWithoutTerminatorIsRead() throws IOException {
+        PricebookTokenizer tokenizer = new PricebookTokenizer(new StringReader(SAMPLE_LINES[3]));
+        PricebookRecord record = new PricebookRecord();
+        assertTrue(tokenizer.next(record));
+        assertEquals("ODWALLA ", record.getBrand());
+        assertEquals("GREEN MACHINE JUICE ", record.getProduct());
+        assertEquals("6 15.2 OZ 2.99 17.94 4.29 30%", record.getTrailingColumns());
+        assertFalse(tokenizer.next(record));
+    }
+
+    @Test
+    public void parseLineUsesGivenRange() {
+        char[] chars = ("##" + SAMPLE_LINES[2] + "##").toCharArray();
+        PricebookRecord record = new PricebookRecord();
+        assertTrue(new PricebookTokenizer().parseLine(chars, 2, SAMPLE_LINES[2].length(), record));
+        assertEquals(39978001054L, record.getBarcode());
+        assertEquals("BOBS RED MILL ", record.getBrand());
+        assertEquals("OLD FASHIONED OATS ", record.getProduct());
+    }
+
+    @Test
+    public void lineWithTooFewColumnsIsSkipped() {
+        char[] chars = SAMPLE_LINES[14].toCharArray();
+        assertFalse(new PricebookTokenizer().parseLine(chars, 0, chars.length, new PricebookRecord()));
+    }
+
+    @Test
+    public void fingerprintFollowsLineContents() {
+        PricebookTokenizer tokenizer = new PricebookTokenizer();
+        PricebookRecord record = new PricebookRecord();
+        char[] original = SAMPLE_LINES[3].toCharArray();
+        char[] respaced = SAMPLE_LINES[3].replace(" ", "  ").toCharArray();
+        char[] repriced = SAMPLE_LINES[3].replace("2.99", "3.09").toCharArray();
+
+        assertTrue(tokenizer.parseLine(original, 0, original.length, record));
+        long fingerprint = record.getFingerprint();
+        assertTrue(tokenizer.parseLine(respaced, 0, respaced.length, record));
+        assertEquals(fingerprint, record.getFingerprint());
+        assertTrue(tokenizer.parseLine(repriced, 0, repriced.length, record));
+        assertNotEquals(fingerprint, record.getFingerprint());
+    }
+
+    private static String describe(long barcode, String brand, String product) {
+        return barcode + "|" + brand + "|" + product;
+    }
+
+    /**
+     * The Scanner based parser previously used by ImportPage, except that lines with too few
+     * trailing columns are skipped rather than throwing, and barcodes are normalized to GTINs
+     * rather than padded with trailing zeros
+     */
+    private static List<String> legacyParse(String line) {
+        List<String> products = new ArrayList<>();
+        if (line.length() <= 1 || line.contains("Grocery") || line.contains("$Unit") || line.contains("Contact")) {
+            return products;
+        }
+        Scanner scanner = new Scanner(line);
+        String brand = "";
+        while (!scanner.hasNextLong() && scanner.hasNext()) {
+            brand = brand + scanner.next() + " ";
+            if (scanner.hasNextLong()) {
+                String token = scanner.next();
+                long next = Long.parseLong(token.replace(",", ""));
+                if (next < 100) {
+                    brand = brand + next + " ";
+                } else {
+                    Stack<String> stack = new Stack<>();
+                    while (scanner.hasNext()) {
+                        stack.push(scanner.next());
+                    }
+                    if (stack.size() < PricebookTokenizer.EXTRA_ELEMENTS) {
+                        return products;
+                    }
+                    for (int i = 0; i < PricebookTokenizer.EXTRA_ELEMENTS; i++) {
+                        stack.pop();
+                    }
+                    String product = "";
+                    while (!stack.isEmpty()) {
+                        product = stack.pop() + " " + product;
+                    }
+                    long barcode = Gtin.fromPricebook(next, token.replaceAll("[^0-9]", "").length());
+                    if (barcode != Gtin.INVALID) {
+                        products.add(describe(barcode, brand, product));
+                    }
+                }
+            }
+        }
+        return products;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.riley.inventoryapplication.Model;
+
+import org.junit.Test;
+
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the membership index never reports a stored barcode as absent
+ */
+public class BarcodeMembershipTest {
+
+    @Test
+    public void everythingMightBePresentUntilLoaded() {
+        BarcodeMembership membership = new BarcodeMembership();
+        int generation = membership.startLoading();
+        assertTrue(membership.mightContain(42));
+        membership.finishLoading(new long[]{10, 20, 30}, 3, generation);
+        assertTrue(membership.mightContain(20));
+        assertFalse(membership.mightContain(42));
+    }
+
+    @Test
+    public void barcodesAddedDuringALoadAreKept() {
+        BarcodeMembership membership = new BarcodeMembership();
+        int generation = membership.startLoading();
+        membership.add(25);
+        membership.add(20);
+        membership.finishLoading(new long[]{10, 20, 30}, 3, generation);
+        assertTrue(membership.mightContain(25));
+        assertTrue(membership.mightContain(20));
+        assertFalse(membership.mightContain(15));
+    }
+
+    @Test
+    public void supersededLoadIsIgnored() {
+        BarcodeMembership membership = new BarcodeMembership();
+        int stale = membership.startLoading();
+        membership.clear();
+        membership.finishLoading(new long[]{10}, 1, stale);
+        assertFalse(membership.mightContain(10));
+    }
+
+    @Test
+    public void manyAddsSurviveMerging() {
+        BarcodeMembership membership = new BarcodeMembership();
+        membership.clear();
+        for (long barcode = 1; barcode <= 100000; barcode += 2) {
+            membership.add(barcode * 7919);
+        }
+        for (long barcode = 1; barcode <= 100000; barcode++) {
+            assertEquals(barcode % 2 == 1, membership.mightContain(barcode * 7919));
+        }
+    }
+
+    @Test
+    public void writesDuringAChunkedLoadLoseNothing() {
+        final BarcodeMembership membership = new BarcodeMembership();
+        final TreeSet<Long> table = new TreeSet<>();
+        for (long barcode = 100; barcode < 200; barcode++) {
+            table.add(barcode);
+        }
+        int generation = membership.startLoading();
+        membership.load(new BarcodeMembership.ChunkReader() {
+            private long inserted = 0;
+
+            @Override
+            public int read(long after, long[] into) {
+                // Between chunks, insert below the reader and delete above it, as other threads may
+                membership.add(inserted);
+                table.add(inserted++);
+                table.remove(table.last());
+                int count = 0;
+                for (long barcode : table.tailSet(after, false)) {
+                    if (count == into.length) {
+                        break;
+                    }
+                    into[count++] = barcode;
+                }
+                return count;
+            }
+        }, 7, generation);
+        assertTrue(membership.isLoaded());
+        for (long barcode : table) {
+            assertTrue(membership.mightContain(barcode));
+        }
+        assertFalse(membership.mightContain(99));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.riley.inventoryapplication.Model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that repeat lookups are served from the cache and that writes are never hidden by it
+ */
+public class CachingProductStoreTest {
+
+    @Test
+    public void repeatLookupsHitTheCache() {
+        CachingProductStore store = new CachingProductStore(new InMemoryProductStore(), 2);
+        store.insertRecord(new ProductProfile(10, "Acme", "Oats"));
+        assertEquals("Oats", store.findByBarcode(10).getProductName());
+        assertEquals("Oats", store.findByBarcode(10).getProductName());
+        assertNull(store.findByBarcode(20));
+        assertNull(store.findByBarcode(20));
+        assertEquals(2, store.getHits());
+        assertEquals(2, store.getMisses());
+    }
+
+    @Test
+    public void leastRecentlyUsedBarcodeIsEvicted() {
+        CachingProductStore store = new CachingProductStore(new InMemoryProductStore(), 2);
+        store.findByBarcode(10);
+        store.findByBarcode(20);
+        store.findByBarcode(10);
+        store.findByBarcode(30);
+        assertEquals(1, store.getEvictions());
+        assertEquals(2, store.size());
+        store.findByBarcode(10);
+        assertEquals(2, store.getHits());
+        store.findByBarcode(20);
+        assertEquals(4, store.getMisses());
+    }
+
+    @Test
+    public void writesAreSeenByTheNextLookup() {
+        CachingProductStore store = new CachingProductStore(new InMemoryProductStore(), 8);
+        assertNull(store.findByBarcode(10));
+        store.upsertRecord(new ProductProfile(10, "Acme", "Oats"));
+        assertEquals("Oats", store.findByBarcode(10).getProductName());
+        store.updateRecord(new ProductProfile(10, "Acme", "Rolled Oats"));
+        assertEquals("Rolled Oats", store.findByBarcode(10).getProductName());
+
+        PricebookWriter writer = store.newDeltaWriter(1, new ImportCheckpoint("pricebook.txt", 1, 1, 0, 0));
+        writer.apply(new ProductProfile(20, "Acme", "Rice"), 1);
+        writer.close();
+        assertNotNull(store.findByBarcode(20));
+        writer.removeStale();
+        // Entered by hand, so the import leaves it alone
+        assertNotNull(store.findByBarcode(10));
+
+        store.deleteAll();
+        assertNull(store.findByBarcode(20));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.riley.inventoryapplication.Model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that every barcode symbology normalizes to the same GTIN for the same product
+ */
+public class GtinTest {
+
+    @Test
+    public void upcAAndEan13ShareAGtin() {
+        assertEquals(36000291452L, Gtin.parse("036000291452"));
+        assertEquals(36000291452L, Gtin.parse("0036000291452"));
+        assertEquals(36000291452L, Gtin.parse("00036000291452"));
+        assertEquals(4006381333931L, Gtin.parse("4006381333931"));
+    }
+
+    @Test
+    public void wrongCheckDigitIsInvalid() {
+        assertEquals(Gtin.INVALID, Gtin.parse("036000291453"));
+        assertEquals(Gtin.INVALID, Gtin.parse("03600029145"));
+        assertEquals(Gtin.INVALID, Gtin.parse("03600029145X"));
+        assertEquals(Gtin.INVALID, Gtin.parseUpcE("04252613"));
+    }
+
+    @Test
+    public void upcEExpandsToUpcA() {
+        // Each form of zero suppression, selected by the last compressed digit
+        assertEquals(Gtin.parse("042100005264"), Gtin.parseUpcE("04252614"));
+        assertEquals(Gtin.parse("042100005264"), Gtin.parseUpcE("425261"));
+        assertEquals(Gtin.parse("012300000451"), Gtin.parseUpcE("01234531"));
+        assertEquals(Gtin.parse("012340000053"), Gtin.parseUpcE("0123454"));
+        assertEquals(Gtin.parse("012345000058"), Gtin.parseUpcE("01234558"));
+    }
+
+    @Test
+    public void pricebookNumbersGainCheckDigitWithoutPadding() {
+        assertEquals(39978001054L, Gtin.fromPricebook(3997800105L, 10));
+        assertEquals("039978001054", Gtin.toString(Gtin.fromPricebook(3997800105L, 10)));
+        assertEquals(13562000043L, Gtin.fromPricebook(13562000043L, 12));
+        assertEquals(Gtin.INVALID, Gtin.fromPricebook(13562000044L, 12));
+    }
+
+    @Test
+    public void toStringPadsToSymbologyLength() {
+        assertEquals("036000291452", Gtin.toString(36000291452L));
+        assertEquals("4006381333931", Gtin.toString(4006381333931L));
+        assertEquals("10036000291459", Gtin.toString(10036000291459L));
+    }
+}
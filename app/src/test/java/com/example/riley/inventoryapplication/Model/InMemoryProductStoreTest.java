@@ -0,0 +1,134 @@
+package com.example.riley.inventoryapplication.Model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the in-memory store against the behaviour the app relies on from the database
+ */
+public class InMemoryProductStoreTest {
+
+    @Test
+    public void writesReplaceAndRemoveProducts() {
+        InMemoryProductStore store = new InMemoryProductStore();
+        store.insertRecord(new ProductProfile(39978001054L, "Bob's Red Mill", "Rolled Oats"));
+        store.insertRecord(new ProductProfile(39978001054L, "Someone Else", "Ignored"));
+        assertEquals("Rolled Oats", store.findByBarcode(39978001054L).getProductName());
+
+        store.upsertRecord(new ProductProfile(39978001054L, "Bob's Red Mill", "Steel Cut Oats"));
+        assertEquals(1, store.countMatches("steel"));
+        assertEquals(0, store.countMatches("rolled"));
+
+        store.deleteRecord(new ProductProfile(39978001054L, null, null));
+        assertNull(store.findByBarcode(39978001054L));
+        assertEquals(0, store.countMatches("oats"));
+    }
+
+    @Test
+    public void everyWordMustStartAWord() {
+        InMemoryProductStore store = new InMemoryProductStore();
+        store.insertRecord(new ProductProfile(10, "Bob's Red Mill", "Rolled Oats"));
+        store.insertRecord(new ProductProfile(20, "Quaker", "Oatmeal Squares"));
+        store.insertRecord(new ProductProfile(30, "Generic", "Goat Milk"));
+        assertEquals(2, store.countMatches("OAT"));
+        assertEquals(1, store.countMatches("red oa"));
+        assertEquals(0, store.countMatches("mill goat"));
+        assertEquals(0, store.countMatches("  "));
+    }
+
+    @Test
+    public void productNameMatchesRankFirst() {
+        InMemoryProductStore store = new InMemoryProductStore();
+        store.insertRecord(new ProductProfile(10, "Oat Farms", "Granola"));
+        store.insertRecord(new ProductProfile(20, "Generic", "Oat Bran"));
+        store.insertRecord(new ProductProfile(30, "Generic", "Rice"));
+        List<ProductProfile> ranked = store.searchByRelevance("oat", 10);
+        assertEquals(2, ranked.size());
+        assertEquals(20, ranked.get(0).getBarcode());
+        assertEquals(1, store.searchByRelevance("oat", 1).size());
+    }
+
+    @Test
+    public void pagesVisitEveryMatchOnceInBrandOrder() {
+        InMemoryProductStore store = new InMemoryProductStore();
+        String[] brands = {null, "Acme", "Bob", "Zed"};
+        for (int i = 1; i <= 250; i++) {
+            store.insertRecord(new ProductProfile(i, brands[i % brands.length], "Oats " + i));
+        }
+        List<ProductProfile> seen = new ArrayList<>();
+        ProductPage page = store.searchPage("oats", null, 100);
+        seen.addAll(page.getProducts());
+        while (page.hasNext()) {
+            page = store.searchPage("oats", page.getNextKey(), 100);
+            seen.addAll(page.getProducts());
+        }
+        assertEquals(250, seen.size());
+        Set<Long> barcodes = new HashSet<>();
+        for (int i = 0; i < seen.size(); i++) {
+            assertTrue(barcodes.add(seen.get(i).getBarcode()));
+            if (i > 0 && seen.get(i - 1).getBrandName() != null) {
+                assertTrue(seen.get(i).getBrandName().compareTo(seen.get(i - 1).getBrandName()) >= 0);
+            }
+        }
+        assertNull(seen.get(0).getBrandName());
+    }
+
+    @Test
+    public void deltaImportWritesOnlyChanges() {
+        InMemoryProductStore store = new InMemoryProductStore();
+        ImportCheckpoint start = new ImportCheckpoint("pricebook.txt", 100, 1, 0, 0);
+        PricebookWriter first = store.newDeltaWriter(10, start);
+        first.apply(new ProductProfile(10, "Acme", "Oats"), 1);
+        first.apply(new ProductProfile(20, "Acme", "Rice"), 2);
+        first.apply(new ProductProfile(20, "Acme", "Rice again"), 3);
+        first.markApplied(50);
+        first.flush();
+        assertEquals(50, store.findCheckpoint("pricebook.txt").getOffset());
+        first.removeStale();
+        first.close();
+        assertEquals(2, first.getInserted());
+        assertEquals(1, first.getDuplicated());
+        assertNull(store.findCheckpoint("pricebook.txt"));
+
+        // Entered by hand, so never removed by an import
+        store.insertRecord(new ProductProfile(40, "Shop", "Bread"));
+        PricebookWriter second = store.newDeltaWriter(10, start);
+        second.apply(new ProductProfile(10, "Acme", "Oats"), 1);
+        second.apply(new ProductProfile(30, "Acme", "Beans"), 4);
+        second.apply(new ProductProfile(10, "Acme", "Oats"), 1);
+        assertEquals(1, second.removeStale());
+        assertEquals(1, second.getUnchanged());
+        assertEquals(1, second.getInserted());
+        assertEquals(1, second.getDuplicated());
+        assertNull(store.findByBarcode(20));
+        assertNotNull(store.findByBarcode(30));
+        assertNotNull(store.findByBarcode(40));
+    }
+
+    @Test
+    public void pricebookTakesOverAProductEnteredByHand() {
+        InMemoryProductStore store = new InMemoryProductStore();
+        store.insertRecord(new ProductProfile(10, "Shop", "Oats"));
+        ImportCheckpoint start = new ImportCheckpoint("pricebook.txt", 100, 1, 0, 0);
+        PricebookWriter first = store.newDeltaWriter(10, start);
+        first.apply(new ProductProfile(10, "Acme", "Rolled Oats"), 1);
+        first.removeStale();
+        first.close();
+        assertEquals(0, first.getInserted());
+        assertEquals(1, first.getUpdated());
+        assertEquals("Rolled Oats", store.findByBarcode(10).getProductName());
+
+        // Now imported, so removed once the pricebook no longer lists it
+        PricebookWriter second = store.newDeltaWriter(10, start);
+        second.apply(new ProductProfile(20, "Acme", "Rice"), 2);
+        assertEquals(1, second.removeStale());
+        second.close();
+        assertNull(store.findByBarcode(10));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.riley.inventoryapplication.Model;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that searches become safe prefix queries and that matches are ranked sensibly
+ */
+public class ProductSearchQueryTest {
+
+    @Test
+    public void everyWordBecomesAQuotedPrefix() {
+        assertEquals("\"bobs*\" \"red*\" \"mill*\"", ProductSearchQuery.toMatchExpression("  Bobs RED-mill"));
+        assertEquals("\"oats*\" \"or*\" \"near*\"", ProductSearchQuery.toMatchExpression("oats OR NEAR*"));
+        assertNull(ProductSearchQuery.toMatchExpression(" \"*- "));
+        assertNull(ProductSearchQuery.toMatchExpression(null));
+    }
+
+    @Test
+    public void rareWordsAndProductMatchesRankHigher() {
+        // One word, two columns, 100 rows: hits in row, hits in all rows, rows with hits
+        double rareInProduct = ProductSearchQuery.relevance(matchinfo(100, 0, 50, 50, 1, 2, 2));
+        double commonInProduct = ProductSearchQuery.relevance(matchinfo(100, 0, 50, 50, 1, 60, 60));
+        double rareInBrand = ProductSearchQuery.relevance(matchinfo(100, 1, 2, 2, 0, 50, 50));
+        assertTrue(rareInProduct > commonInProduct);
+        assertTrue(rareInProduct > rareInBrand);
+    }
+
+    @Test
+    public void narrowingAPageAgreesWithSearchingAgain() {
+        InMemoryProductStore store = new InMemoryProductStore();
+        store.insertRecord(new ProductProfile(1, "Acme", "Rolled Oats"));
+        store.insertRecord(new ProductProfile(2, "Acme", "Oat Milk"));
+        store.insertRecord(new ProductProfile(3, "Oatly", "Barista"));
+        store.insertRecord(new ProductProfile(4, "Bobs", "Red Mill Oats"));
+        ProductPage page = store.searchPage("oat", null, 10);
+        for (String query : new String[]{"oats", "oat m", "oat acme", "oatl"}) {
+            ProductPage narrowed = page.narrow("oat", query);
+            assertEquals(barcodes(store.searchPage(query, null, 10)), barcodes(narrowed));
+        }
+        assertNull(page.narrow("oat", "oa"));
+        assertNull(store.searchPage("oat", null, 2).narrow("oat", "oats"));
+    }
+
+    private static List<Long> barcodes(ProductPage page) {
+        List<Long> barcodes = new ArrayList<>();
+        for (ProductProfile profile : page.getProducts()) {
+            barcodes.add(profile.getBarcode());
+        }
+        return barcodes;
+    }
+
+    private static byte[] matchinfo(int rows, int... hits) {
+        ByteBuffer info = ByteBuffer.allocate(4 * (3 + hits.length)).order(ByteOrder.nativeOrder());
+        info.putInt(1).putInt(2).putInt(rows);
+        for (int hit : hits) {
+            info.putInt(hit);
+        }
+        return info.array();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.riley.inventoryapplication.Model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that patched results match what searching again would load
+ */
+public class ResultWindowTest {
+    private static final List<ProductProfile> LOADED = Arrays.asList(
+            new ProductProfile(1, "Acme", "Oats"),
+            new ProductProfile(2, "Bobs", "Oats"),
+            new ProductProfile(3, "Quaker", "Oats"));
+
+    @Test
+    public void changesWithinTheWindowArePatchedInPlace() {
+        List<ProductProfile> patched = ResultWindow.patch(LOADED, false, "oats",
+                new ProductChange(ProductChange.Kind.INSERTED, 4, new ProductProfile(4, "Bobs", "Steel Cut Oats")));
+        assertEquals(Arrays.asList(1L, 2L, 4L, 3L), barcodes(patched));
+        patched = ResultWindow.patch(patched, false, "oats",
+                new ProductChange(ProductChange.Kind.UPDATED, 1, new ProductProfile(1, "Zed", "Oats")));
+        assertEquals(Arrays.asList(2L, 4L, 3L), barcodes(patched));
+        patched = ResultWindow.patch(patched, false, "oats", new ProductChange(ProductChange.Kind.DELETED, 2, null));
+        assertEquals(Arrays.asList(4L, 3L), barcodes(patched));
+    }
+
+    @Test
+    public void productsLeavingTheQueryOrBeyondTheWindowAreLeftOut() {
+        ProductChange renamed = new ProductChange(ProductChange.Kind.UPDATED, 2, new ProductProfile(2, "Bobs", "Flour"));
+        assertEquals(Arrays.asList(1L, 3L), barcodes(ResultWindow.patch(LOADED, false, "oats", renamed)));
+        ProductChange last = new ProductChange(ProductChange.Kind.INSERTED, 5, new ProductProfile(5, "Zed", "Oats"));
+        assertEquals(Arrays.asList(1L, 2L, 3L), barcodes(ResultWindow.patch(LOADED, false, "oats", last)));
+        assertEquals(Arrays.asList(1L, 2L, 3L, 5L), barcodes(ResultWindow.patch(LOADED, true, "oats", last)));
+    }
+
+    private static List<Long> barcodes(List<ProductProfile> products) {
+        List<Long> barcodes = new ArrayList<>();
+        for (ProductProfile profile : products) {
+            barcodes.add(profile.getBarcode());
+        }
+        return barcodes;
+    }
+}
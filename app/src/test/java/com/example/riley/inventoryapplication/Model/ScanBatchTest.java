@@ -0,0 +1,51 @@
+package com.example.riley.inventoryapplication.Model;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that batch scanning counts each item once and commits what it counted
+ */
+public class ScanBatchTest {
+
+    @Test
+    public void repeatedReadsOfAnItemInViewCountOnce() {
+        ScanBatch batch = new ScanBatch(1000);
+        assertTrue(batch.record(10, 0));
+        // Still in view: each read pushes the window on
+        assertFalse(batch.record(10, 800));
+        assertFalse(batch.record(10, 1600));
+        assertTrue(batch.record(20, 1700));
+        // The next item of the same product, once the first is out of view long enough
+        assertTrue(batch.record(10, 2700));
+        assertEquals(2, batch.getCount(10));
+        assertEquals(1, batch.getCount(20));
+        assertEquals(3, batch.getTotal());
+        assertEquals(2, batch.getProductCount());
+    }
+
+    @Test
+    public void committingKeepsItemsCountedSince() {
+        ScanBatch batch = new ScanBatch(0);
+        batch.record(10, 0);
+        batch.record(20, 1);
+        Map<Long, Integer> committed = batch.getCounts();
+        batch.record(10, 2);
+        batch.record(30, 3);
+        batch.remove(committed);
+        assertEquals(1, batch.getCount(10));
+        assertEquals(0, batch.getCount(20));
+        assertEquals(1, batch.getCount(30));
+        assertEquals(2, batch.getTotal());
+
+        InMemoryProductStore store = new InMemoryProductStore();
+        store.addCounts(committed);
+        store.addCounts(batch.getCounts());
+        assertEquals(2, store.findCount(10));
+        assertEquals(1, store.findCount(20));
+        assertEquals(0, store.findCount(40));
+    }
+}